@@ -0,0 +1,77 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks resetting a database with the {@link DatabaseResetStrategy.Strategy strategies} of {@link ClearDatabase}.
+ * <p>
+ * The schema is a chain of tables that reference their predecessor. Before each reset, rows are inserted into the
+ * first two tables, as a typical test only writes to a few tables of a service's schema.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClearDatabaseBenchmark {
+
+    @Param({"DELETE", "TRUNCATE", "DIRTY_TABLES", "SNAPSHOT"})
+    private DatabaseResetStrategy.Strategy strategy;
+
+    @Param({"20"})
+    private int tableCount;
+
+    @Param({"100"})
+    private int rows;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ClearDatabase clearDatabase;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        final MeitrexPostgresSqlContainer container = MeitrexPostgresSqlContainer.getInstance();
+        container.start();
+
+        final HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(container.getJdbcUrl(container.createDatabase()));
+        config.setUsername(container.getUsername());
+        config.setPassword(container.getPassword());
+        dataSource = new HikariDataSource(config);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("CREATE TABLE table_0 (id BIGSERIAL PRIMARY KEY, payload TEXT)");
+        for (int i = 1; i < tableCount; i++) {
+            jdbcTemplate.execute(("CREATE TABLE table_%d (id BIGSERIAL PRIMARY KEY, "
+                                  + "parent_id BIGINT REFERENCES table_%d (id), payload TEXT)").formatted(i, i - 1));
+        }
+
+        clearDatabase = new ClearDatabase();
+        clearDatabase.initialize(dataSource, strategy);
+    }
+
+    @Setup(Level.Invocation)
+    public void insertRows() {
+        jdbcTemplate.update("INSERT INTO table_0 (payload) SELECT 'payload' FROM generate_series(1, ?)", rows);
+        if (tableCount > 1) {
+            jdbcTemplate.update("INSERT INTO table_1 (parent_id, payload) SELECT id, 'payload' FROM table_0");
+        }
+    }
+
+    @Benchmark
+    public void reset() throws SQLException {
+        clearDatabase.resetDatabase();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+}
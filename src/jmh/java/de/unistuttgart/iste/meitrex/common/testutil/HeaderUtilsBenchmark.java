@@ -0,0 +1,51 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the creation of {@link HeaderUtils#CURRENT_USER_HEADER} values,
+ * for the same user on each call and for a stream of different users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderUtilsBenchmark {
+
+    private static final int USER_COUNT = 1000;
+
+    @Param({"0", "5", "50"})
+    private int memberships;
+
+    private LoggedInUser user;
+    private List<LoggedInUser> users;
+
+    @Setup
+    public void setUp() {
+        final TestUserGenerator generator = TestUsers.generator(42)
+                .courseCount(Math.max(memberships, 1))
+                .minMemberships(memberships)
+                .maxMemberships(memberships)
+                .build();
+        user = generator.user(0);
+        users = generator.stream(USER_COUNT).toList();
+    }
+
+    @Benchmark
+    public String singleUserHeader() {
+        return HeaderUtils.getCurrentUserHeaderValue(user);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(USER_COUNT)
+    public void streamedHeaders(final Blackhole blackhole) {
+        HeaderUtils.getCurrentUserHeaderValues(users.stream()).forEach(blackhole::consume);
+    }
+}
@@ -2,6 +2,7 @@ package de.unistuttgart.iste.meitrex.common.testutil;
 
 import org.junit.jupiter.api.extension.AfterEachCallback;
 import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -9,11 +10,10 @@ import org.springframework.test.jdbc.JdbcTestUtils;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 /**
  * JUnit test extension that clears the database after each test.
@@ -24,33 +24,147 @@ import java.util.List;
  *     public class MyTest {
  *       // ...
  * </pre>
+ * By default, all tables are cleared in an order derived from their foreign keys. <br>
  * To specify the tables to delete, annotate the test class with {@link TablesToDelete} <br>
  * This can also be used to specify the order of deletion. <br>
+ * To change how the tables are cleared, annotate the test class with {@link DatabaseResetStrategy}. <br>
+ * Tests isolated by {@link TransactionalRollback} are skipped. <br>
+ * If tests run in parallel, tests that use the same database run one after another, also if they use it through
+ * different data sources, e.g., of different Spring contexts,
+ * as the reset after one test would otherwise delete the data of the others. <br>
  * This extension is automatically used by {@link GraphQlApiTest}.
  */
-public class ClearDatabase implements AfterEachCallback, BeforeAllCallback {
+public class ClearDatabase implements AfterEachCallback, BeforeAllCallback, BeforeEachCallback {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(ClearDatabase.class);
+    private static final String LOCK_KEY = "lock";
+
+    /**
+     * One lock per physical database, by JDBC URL and database name.
+     */
+    private static final Map<String, Semaphore> LOCKS = new ConcurrentHashMap<>();
 
     private DataSource dataSource;
+    private String databaseKey;
     private List<String> tablesInOrderOfDeletion = null;
+    private DatabaseResetStrategy.Strategy strategy = DatabaseResetStrategy.Strategy.DELETE;
+    private TableDependencyGraph tableDependencyGraph = null;
+    private boolean snapshotSupported = false;
 
     @Override
-    public void beforeAll(ExtensionContext context) {
+    public void beforeAll(ExtensionContext context) throws SQLException {
         context.getTestClass().ifPresent(testClass -> {
             if (testClass.isAnnotationPresent(TablesToDelete.class)) {
                 this.tablesInOrderOfDeletion = Arrays.asList(testClass.getAnnotation(TablesToDelete.class).value());
             }
+            if (testClass.isAnnotationPresent(DatabaseResetStrategy.class)) {
+                this.strategy = testClass.getAnnotation(DatabaseResetStrategy.class).value();
+            }
         });
-        this.dataSource = SpringExtension.getApplicationContext(context).getBean("dataSource", DataSource.class);
+        initialize(SpringExtension.getApplicationContext(context).getBean("dataSource", DataSource.class), this.strategy);
+    }
+
+    /**
+     * Sets the data source to reset and the strategy to reset it with.
+     * Called by {@link #beforeAll(ExtensionContext)}, and by benchmarks that reset a database without JUnit.
+     */
+    void initialize(DataSource dataSource, DatabaseResetStrategy.Strategy strategy) throws SQLException {
+        this.dataSource = dataSource;
+        this.strategy = strategy;
+        try (Connection connection = dataSource.getConnection()) {
+            this.databaseKey = connection.getMetaData().getURL() + "|" + connection.getCatalog();
+        }
+
+        if (strategy == DatabaseResetStrategy.Strategy.SNAPSHOT && DatabaseSnapshots.isSupported(this.dataSource)) {
+            DatabaseSnapshots.ensureSnapshot(this.dataSource);
+            this.snapshotSupported = true;
+        }
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) throws InterruptedException {
+        Semaphore lock = LOCKS.computeIfAbsent(this.databaseKey, key -> new Semaphore(1));
+        lock.acquire();
+        context.getStore(NAMESPACE).put(LOCK_KEY, lock);
     }
 
     @Override
     public void afterEach(ExtensionContext context) throws SQLException {
-        deleteTables();
+        try {
+            // tests isolated by a transaction have already been rolled back
+            if (!TransactionalRollback.isActive(context)) {
+                long start = System.nanoTime();
+                resetDatabase();
+                TestPhaseTimer.addTime(context, TestPhase.DATABASE_RESET, System.nanoTime() - start);
+            }
+        } finally {
+            // the lock has not been acquired if another extension failed before this extension's beforeEach
+            Semaphore lock = context.getStore(NAMESPACE).remove(LOCK_KEY, Semaphore.class);
+            if (lock != null) {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Resets the database with the configured strategy.
+     */
+    void resetDatabase() throws SQLException {
+        if (this.snapshotSupported) {
+            DatabaseSnapshots.restore(this.dataSource);
+            return;
+        }
+
+        TableDependencyGraph graph = getTableDependencyGraph();
+
+        if (strategy == DatabaseResetStrategy.Strategy.DELETE
+            || strategy == DatabaseResetStrategy.Strategy.SNAPSHOT
+            || !graph.isPostgres()) {
+            deleteTables(graph);
+        } else if (strategy == DatabaseResetStrategy.Strategy.TRUNCATE) {
+            truncateTables();
+        } else {
+            DirtyTableTracker.forDataSource(this.dataSource).reset(this.dataSource, getTablesToDelete());
+        }
     }
 
-    private void deleteTables() throws SQLException {
+    private void truncateTables() throws SQLException {
+        List<String> tablesToTruncate = getTablesToDelete();
+        if (tablesToTruncate.isEmpty()) {
+            return;
+        }
+
+        // CASCADE also truncates tables that reference the given tables, so the order does not matter
+        new JdbcTemplate(this.dataSource)
+                .execute("TRUNCATE TABLE " + String.join(", ", tablesToTruncate) + " RESTART IDENTITY CASCADE");
+    }
+
+    private void deleteTables(TableDependencyGraph graph) {
         JdbcTemplate template = new JdbcTemplate(this.dataSource);
-        List<String> notDeletedTables = getTablesToDelete();
+
+        if (this.tablesInOrderOfDeletion != null) {
+            deleteTablesWithRetries(template, this.tablesInOrderOfDeletion);
+            return;
+        }
+
+        for (List<String> group : graph.getDeletionGroups()) {
+            if (group.size() == 1) {
+                JdbcTestUtils.deleteFromTables(template, group.getFirst());
+            } else if (graph.isPostgres()) {
+                // the tables reference each other in a cycle, so none of them can be deleted on its own
+                template.execute("TRUNCATE TABLE " + String.join(", ", group) + " CASCADE");
+            } else {
+                deleteTablesWithRetries(template, group);
+            }
+        }
+    }
+
+    /**
+     * Deletes the given tables, retrying tables that could not be deleted because of
+     * foreign key constraints until all tables are deleted or no progress is made.
+     */
+    private void deleteTablesWithRetries(JdbcTemplate template, List<String> tables) {
+        List<String> notDeletedTables = tables;
 
         while (!notDeletedTables.isEmpty()) {
             List<String> tablesToDelete = new ArrayList<>(notDeletedTables);
@@ -76,27 +190,17 @@ public class ClearDatabase implements AfterEachCallback, BeforeAllCallback {
     }
 
     private List<String> getTablesToDelete() throws SQLException {
-        if (this.tablesInOrderOfDeletion == null) {
-            this.tablesInOrderOfDeletion = getAllDbTableNames(this.dataSource);
+        if (this.tablesInOrderOfDeletion != null) {
+            return this.tablesInOrderOfDeletion;
         }
-        return this.tablesInOrderOfDeletion;
+        return getTableDependencyGraph().getTablesInDeletionOrder();
     }
 
-    /**
-     * Returns all table names of the database
-     *
-     * @param dataSource the datasource
-     * @return a list of table names
-     */
-    private List<String> getAllDbTableNames(DataSource dataSource) throws SQLException {
-        try (Connection connection = dataSource.getConnection()) {
-            List<String> result = new ArrayList<>();
-            ResultSet resultTables = connection.getMetaData().getTables(null, null, "%", new String[]{"TABLE"});
-            while (resultTables.next()) {
-                result.add(resultTables.getString("TABLE_NAME"));
-            }
-            return result;
+    private TableDependencyGraph getTableDependencyGraph() throws SQLException {
+        if (this.tableDependencyGraph == null) {
+            this.tableDependencyGraph = TableDependencyGraph.of(this.dataSource);
         }
+        return this.tableDependencyGraph;
     }
 
 }
@@ -0,0 +1,17 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
+
+import java.util.UUID;
+
+/**
+ * An invocation of a {@link ConcurrentRepeat} test, can be injected into the test method.
+ *
+ * @param index  the index of the invocation, starting at 0
+ * @param userId the id of the user the requests of the injected tester are sent as, or null if they are sent
+ *               without user
+ * @param user   the user the requests of the injected tester are sent as, or null if the field annotated with
+ *               {@link InjectCurrentUserHeader} is a {@link UUID} or there is no such field
+ */
+public record ConcurrentInvocation(int index, UUID userId, LoggedInUser user) {
+}
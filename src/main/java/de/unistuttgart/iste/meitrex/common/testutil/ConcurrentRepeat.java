@@ -0,0 +1,59 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a test method that is run many times concurrently, to find race conditions, lock contention,
+ * optimistic locking failures and lost updates.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;ConcurrentRepeat(threads = 16, iterations = 200)
+ *     void enrollConcurrently(GraphQlTester tester, ConcurrentInvocation invocation) {
+ *         tester.document(enrollMutation).execute().path("enroll.userId").entity(UUID.class)
+ *                 .isEqualTo(invocation.userId());
+ *     }
+ * </pre>
+ * The invocations run on virtual threads, against the application context of the test class. All threads start
+ * at the same time. Each invocation gets its own tester: parameters of type {@code GraphQlTester},
+ * {@code HttpGraphQlTester} and {@code WebGraphQlTester} are replaced by a tester with the user of the field
+ * annotated with {@link InjectCurrentUserHeader}. If {@link #distinctUsers()} is true, each invocation gets a copy
+ * of that user with its own id. A parameter of type {@link ConcurrentInvocation} tells an invocation its index
+ * and user. Other parameters are shared by all invocations.
+ * <p>
+ * The test fails if more than {@link #allowedFailures()} invocations fail, with the first failures attached.
+ * The number of failures and the throughput are logged and published as a report entry.
+ * {@link ClearDatabase} resets the database only after all invocations have finished.
+ * The test class must not use {@link TransactionalRollback}, which cannot isolate work on other threads.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Test
+@ExtendWith(ConcurrentRepeatExtension.class)
+public @interface ConcurrentRepeat {
+
+    /**
+     * The number of invocations that run at the same time.
+     */
+    int threads() default 8;
+
+    /**
+     * The total number of invocations.
+     */
+    int iterations() default 100;
+
+    /**
+     * If true, each invocation gets its own user, a copy of the user of the field annotated with
+     * {@link InjectCurrentUserHeader} with another id. If false, all invocations send requests as that user.
+     */
+    boolean distinctUsers() default true;
+
+    /**
+     * The number of invocations that may fail without failing the test, e.g., for tests that expect some
+     * optimistic locking failures.
+     */
+    int allowedFailures() default 0;
+}
@@ -0,0 +1,203 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.extension.*;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.ReflectionSupport;
+import org.springframework.graphql.test.tester.GraphQlTester;
+import org.springframework.graphql.test.tester.HttpGraphQlTester;
+import org.springframework.graphql.test.tester.WebGraphQlTester;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JUnit test extension that runs {@link ConcurrentRepeat} tests. It is registered by the annotation.
+ */
+@Slf4j
+public class ConcurrentRepeatExtension implements ParameterResolver, InvocationInterceptor {
+
+    private static final int MAX_FAILURE_SAMPLES = 10;
+
+    @Override
+    public boolean supportsParameter(final ParameterContext parameterContext,
+                                     final ExtensionContext extensionContext) throws ParameterResolutionException {
+        return parameterContext.getParameter().getType().equals(ConcurrentInvocation.class);
+    }
+
+    @Override
+    public Object resolveParameter(final ParameterContext parameterContext,
+                                   final ExtensionContext extensionContext) throws ParameterResolutionException {
+        // replaced for each invocation
+        return new ConcurrentInvocation(-1, null, null);
+    }
+
+    @Override
+    public void interceptTestMethod(final Invocation<Void> invocation,
+                                    final ReflectiveInvocationContext<Method> invocationContext,
+                                    final ExtensionContext extensionContext) throws Throwable {
+        final ConcurrentRepeat settings = AnnotationSupport
+                .findAnnotation(extensionContext.getRequiredTestMethod(), ConcurrentRepeat.class)
+                .orElseThrow();
+        if (TransactionalRollback.isActive(extensionContext)) {
+            throw new ExtensionConfigurationException("ConcurrentRepeat tests cannot be isolated by transactional "
+                                                      + "rollback, as the invocations run on other threads");
+        }
+        // the invocations below replace the regular one
+        invocation.skip();
+
+        final Optional<Object> currentUser = GraphQlTesterParameterResolver.getCurrentUser(extensionContext);
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final LongAdder failureCount = new LongAdder();
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+        final long start;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int thread = 0; thread < settings.threads(); thread++) {
+                executor.execute(() -> {
+                    awaitStart(startSignal);
+                    int index;
+                    while ((index = nextIndex.getAndIncrement()) < settings.iterations()) {
+                        final ConcurrentInvocation concurrentInvocation = createInvocation(index, currentUser, settings);
+                        final long invocationStart = System.nanoTime();
+                        try {
+                            ReflectionSupport.invokeMethod(invocationContext.getExecutable(),
+                                    invocationContext.getTarget().orElse(null),
+                                    getArguments(invocationContext, extensionContext, concurrentInvocation));
+                        } catch (final Throwable e) {
+                            failureCount.increment();
+                            if (failures.size() < MAX_FAILURE_SAMPLES) {
+                                failures.add(e);
+                            }
+                        } finally {
+                            latencies.record(System.nanoTime() - invocationStart);
+                        }
+                    }
+                });
+            }
+            start = System.nanoTime();
+            startSignal.countDown();
+        }
+        // the executor waits for all invocations, so the database is only reset by ClearDatabase afterwards
+        final long durationNanos = System.nanoTime() - start;
+
+        report(extensionContext, settings, failureCount.sum(), durationNanos, latencies);
+        checkFailures(settings, failureCount.sum(), failures);
+    }
+
+    private static void awaitStart(final CountDownLatch startSignal) {
+        try {
+            startSignal.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted before the invocations started", e);
+        }
+    }
+
+    private static Object[] getArguments(final ReflectiveInvocationContext<Method> invocationContext,
+                                         final ExtensionContext extensionContext,
+                                         final ConcurrentInvocation concurrentInvocation) {
+        final Class<?>[] parameterTypes = invocationContext.getExecutable().getParameterTypes();
+        final Object[] arguments = invocationContext.getArguments().toArray();
+
+        for (int i = 0; i < parameterTypes.length; i++) {
+            final Class<?> type = parameterTypes[i];
+            if (type.equals(ConcurrentInvocation.class)) {
+                arguments[i] = concurrentInvocation;
+            } else if (type.equals(GraphQlTester.class) || type.equals(HttpGraphQlTester.class)
+                       || type.equals(WebGraphQlTester.class)) {
+                arguments[i] = createTester(extensionContext, concurrentInvocation);
+            }
+        }
+        return arguments;
+    }
+
+    private static WebGraphQlTester createTester(final ExtensionContext extensionContext,
+                                                 final ConcurrentInvocation concurrentInvocation) {
+        final HttpGraphQlTester tester = GraphQlTesterParameterResolver.getBaseHttpGraphQlTester(extensionContext);
+        if (concurrentInvocation.user() != null) {
+            return HeaderUtils.addCurrentUserHeader(tester, concurrentInvocation.user());
+        }
+        if (concurrentInvocation.userId() != null) {
+            return HeaderUtils.addCurrentUserHeader(tester, concurrentInvocation.userId());
+        }
+        return tester;
+    }
+
+    private static ConcurrentInvocation createInvocation(final int index,
+                                                         final Optional<Object> currentUser,
+                                                         final ConcurrentRepeat settings) {
+        if (currentUser.isEmpty()) {
+            return new ConcurrentInvocation(index, null, null);
+        }
+        if (currentUser.get() instanceof UUID userId) {
+            return new ConcurrentInvocation(index, settings.distinctUsers() ? deriveId(userId, index) : userId, null);
+        }
+
+        final LoggedInUser user = (LoggedInUser) currentUser.get();
+        if (!settings.distinctUsers()) {
+            return new ConcurrentInvocation(index, user.getId(), user);
+        }
+        final LoggedInUser copy = LoggedInUser.builder()
+                .id(deriveId(user.getId(), index))
+                .userName(user.getUserName() + "-" + index)
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .nickname(user.getNickname())
+                .courseMemberships(user.getCourseMemberships())
+                .realmRoles(user.getRealmRoles())
+                .build();
+        return new ConcurrentInvocation(index, copy.getId(), copy);
+    }
+
+    /**
+     * @return an id that is the same for each run of the test, so that failures can be reproduced
+     */
+    private static UUID deriveId(final UUID id, final int index) {
+        return UUID.nameUUIDFromBytes((id + "/" + index).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void report(final ExtensionContext extensionContext,
+                               final ConcurrentRepeat settings,
+                               final long failureCount,
+                               final long durationNanos,
+                               final LatencyHistogram latencies) {
+        final double throughput = settings.iterations() / (durationNanos / 1_000_000_000.0);
+        final LoadTestReport.Latency latency = latencies.toLatency();
+
+        log.info("{}: {} invocations on {} threads in {} ms, {} failed, {} invocations/s, p50 {} ms, p99 {} ms",
+                extensionContext.getDisplayName(), settings.iterations(), settings.threads(), durationNanos / 1_000_000,
+                failureCount, String.format(Locale.ROOT, "%.1f", throughput), latency.p50(), latency.p99());
+
+        extensionContext.publishReportEntry(Map.of(
+                "concurrentRepeat.invocations", String.valueOf(settings.iterations()),
+                "concurrentRepeat.threads", String.valueOf(settings.threads()),
+                "concurrentRepeat.failures", String.valueOf(failureCount),
+                "concurrentRepeat.throughputPerSecond", String.format(Locale.ROOT, "%.1f", throughput),
+                "concurrentRepeat.p99Millis", String.valueOf(latency.p99())));
+    }
+
+    private static void checkFailures(final ConcurrentRepeat settings,
+                                      final long failureCount,
+                                      final Collection<Throwable> failures) {
+        if (failureCount <= settings.allowedFailures()) {
+            return;
+        }
+
+        final Throwable first = failures.iterator().next();
+        final AssertionError error = new AssertionError("%d of %d concurrent invocations failed (%d allowed), first failure: %s"
+                .formatted(failureCount, settings.iterations(), settings.allowedFailures(), first), first);
+        failures.stream().skip(1).forEach(error::addSuppressed);
+        throw error;
+    }
+}
@@ -0,0 +1,72 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.test.context.MergedContextConfiguration;
+
+import java.util.*;
+
+/**
+ * Collects the {@link ContextFingerprint}s of the test classes of the whole test run and logs which test classes
+ * need their own Spring context, i.e., cause a miss in Spring's context cache, and why.
+ * A summary of all contexts is logged when the JUnit root context closes.
+ */
+@Slf4j
+final class ContextCacheAnalyzer implements ExtensionContext.Store.CloseableResource {
+
+    private final Map<MergedContextConfiguration, ContextFingerprint> contexts = new LinkedHashMap<>();
+    private final Map<MergedContextConfiguration, Set<String>> testClasses = new HashMap<>();
+
+    static ContextCacheAnalyzer get(final ExtensionContext extensionContext) {
+        return extensionContext.getRoot()
+                .getStore(ExtensionContext.Namespace.create(ContextCacheAnalyzer.class))
+                .getOrComputeIfAbsent(ContextCacheAnalyzer.class, key -> new ContextCacheAnalyzer(), ContextCacheAnalyzer.class);
+    }
+
+    /**
+     * Records the fingerprint of a test class. If no test class had the same configuration before, the test class
+     * needs a new context. This is logged together with the differences to the most similar known configuration.
+     *
+     * @return the number of the context of the test class, counted in the order the contexts were first needed
+     */
+    synchronized int record(final ContextFingerprint fingerprint) {
+        testClasses.computeIfAbsent(fingerprint.configuration(), key -> new LinkedHashSet<>())
+                .add(fingerprint.testClass());
+        if (contexts.containsKey(fingerprint.configuration())) {
+            return List.copyOf(contexts.keySet()).indexOf(fingerprint.configuration()) + 1;
+        }
+
+        final Optional<ContextFingerprint> closest = contexts.values().stream()
+                .min(Comparator.comparingInt(known -> fingerprint.differencesTo(known).size()));
+        contexts.put(fingerprint.configuration(), fingerprint);
+
+        if (closest.isPresent()) {
+            log.info("{} needs Spring context #{}, it differs from the context of {} in: {}",
+                    fingerprint.testClass(), contexts.size(), closest.get().testClass(),
+                    String.join("; ", fingerprint.differencesTo(closest.get())));
+        }
+        return contexts.size();
+    }
+
+    synchronized int getContextCount() {
+        return contexts.size();
+    }
+
+    /**
+     * @return one line per context, listing the test classes that use it
+     */
+    synchronized String describeContexts() {
+        final StringBuilder description = new StringBuilder();
+        int number = 1;
+        for (final MergedContextConfiguration configuration : contexts.keySet()) {
+            description.append("\n  context #").append(number++).append(": ")
+                    .append(String.join(", ", testClasses.get(configuration)));
+        }
+        return description.toString();
+    }
+
+    @Override
+    public void close() {
+        log.info("Test classes used {} distinct Spring context(s):{}", getContextCount(), describeContexts());
+    }
+}
@@ -0,0 +1,40 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.opentest4j.AssertionFailedError;
+
+import java.util.Map;
+
+/**
+ * JUnit test extension that reports test classes that cannot reuse a cached Spring context.
+ * It is automatically registered by {@link GraphQlApiTest}.
+ * <p>
+ * Each Spring context costs several seconds and a lot of heap. Spring builds a new one whenever the context
+ * configuration of a test class differs from all cached ones, e.g., because of different {@code @Import}s,
+ * properties or {@code @MockBean}s. This extension logs each such test class, together with what differs
+ * from the most similar context, and a summary of all contexts at the end of the test run.
+ * <p>
+ * If the system property {@code meitrex.context-cache.max-contexts} is set, test classes that need a context
+ * beyond that number fail before the context is loaded, so that new contexts are not introduced unnoticed.
+ * To load the contexts ahead of the test classes, see {@link ContextWarmupListener}.
+ */
+public class ContextCacheExtension implements BeforeAllCallback {
+
+    private static final String MAX_CONTEXTS_PROPERTY = "meitrex.context-cache.max-contexts";
+
+    @Override
+    public void beforeAll(final ExtensionContext context) {
+        final ContextFingerprint fingerprint = ContextFingerprint.of(context.getRequiredTestClass());
+        final ContextCacheAnalyzer analyzer = ContextCacheAnalyzer.get(context);
+        final int contextNumber = analyzer.record(fingerprint);
+        context.publishReportEntry(Map.of("contextCache.context", String.valueOf(contextNumber)));
+
+        final int maxContexts = Integer.getInteger(MAX_CONTEXTS_PROPERTY, -1);
+        if (maxContexts >= 0 && contextNumber > maxContexts) {
+            throw new AssertionFailedError("%s needs Spring context #%d, but at most %d are allowed by %s. Contexts:%s"
+                    .formatted(fingerprint.testClass(), contextNumber, maxContexts,
+                            MAX_CONTEXTS_PROPERTY, analyzer.describeContexts()));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.springframework.test.context.BootstrapUtils;
+import org.springframework.test.context.MergedContextConfiguration;
+
+import java.util.*;
+
+/**
+ * The configuration of the Spring context of a test class. Spring uses it as the key of its context cache,
+ * so test classes with equal configurations share a context.
+ *
+ * @param testClass     the name of the test class
+ * @param configuration the merged context configuration of the test class
+ */
+record ContextFingerprint(String testClass, MergedContextConfiguration configuration) {
+
+    /**
+     * Computes the configuration the way Spring does when the test class runs, without loading the context.
+     *
+     * @param testClass the test class
+     * @return the fingerprint of the test class
+     */
+    static ContextFingerprint of(final Class<?> testClass) {
+        return new ContextFingerprint(testClass.getName(),
+                BootstrapUtils.resolveTestContextBootstrapper(testClass).buildMergedContextConfiguration());
+    }
+
+    /**
+     * @return the parts of the configuration that are compared by the context cache, by name.
+     * Mocked beans appear as context customizers.
+     */
+    Map<String, Object> attributes() {
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("classes", List.of(configuration.getClasses()));
+        attributes.put("locations", List.of(configuration.getLocations()));
+        attributes.put("initializers", configuration.getContextInitializerClasses());
+        attributes.put("activeProfiles", List.of(configuration.getActiveProfiles()));
+        attributes.put("propertySources", configuration.getPropertySourceDescriptors());
+        attributes.put("properties", List.of(configuration.getPropertySourceProperties()));
+        attributes.put("contextCustomizers", configuration.getContextCustomizers());
+        attributes.put("contextLoader", configuration.getContextLoader().getClass().getName());
+        attributes.put("parent", Objects.toString(configuration.getParent()));
+        return attributes;
+    }
+
+    /**
+     * @param other the fingerprint to compare with
+     * @return a description of each attribute that differs, e.g., {@code properties: +[a=1] -[a=2]}
+     */
+    List<String> differencesTo(final ContextFingerprint other) {
+        final Map<String, Object> otherAttributes = other.attributes();
+        final List<String> differences = new ArrayList<>();
+
+        attributes().forEach((name, value) -> {
+            final Object otherValue = otherAttributes.get(name);
+            if (Objects.equals(value, otherValue)) {
+                return;
+            }
+            if (value instanceof Collection<?> values && otherValue instanceof Collection<?> otherValues) {
+                differences.add("%s: +%s -%s".formatted(name,
+                        values.stream().filter(element -> !otherValues.contains(element)).toList(),
+                        otherValues.stream().filter(element -> !values.contains(element)).toList()));
+            } else {
+                differences.add("%s: %s instead of %s".formatted(name, value, otherValue));
+            }
+        });
+        return differences;
+    }
+}
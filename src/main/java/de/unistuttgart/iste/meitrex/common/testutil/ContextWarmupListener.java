@@ -0,0 +1,127 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.HierarchyTraversalMode;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.springframework.core.SpringProperties;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.MergedContextConfiguration;
+import org.springframework.test.context.TestContextAnnotationUtils;
+import org.springframework.test.context.TestContextManager;
+import org.springframework.test.context.cache.ContextCacheUtils;
+import org.testcontainers.junit.jupiter.Container;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the Spring contexts of all {@link GraphQlApiTest} classes of a test run in the background, if the system
+ * property {@code meitrex.context-cache.warmup} is {@code true}.
+ * <p>
+ * When the test run starts, the listener computes the {@link ContextFingerprint} of each test class in the test
+ * plan and loads one context per distinct configuration into Spring's context cache, in the order in which the
+ * test classes run. Test classes then find their context in the cache, and the context of the next test class
+ * is loaded while the tests of the current one run. At most as many contexts as fit into the context cache
+ * ({@code spring.test.context.cache.maxSize}) are loaded, so that warmed contexts are not evicted again.
+ * <p>
+ * Spring's context cache loads one context at a time, so the contexts are loaded one after another on a single
+ * thread. Tests that need a context while another one is loaded wait for it.
+ * <p>
+ * Contexts that depend on the setup of their test class cannot be loaded ahead of it and are skipped, i.e.,
+ * contexts of test classes with {@link Container} fields or {@link DynamicPropertySource} methods.
+ * <p>
+ * Spring counts a failed warm-up against the failure threshold of the context configuration, so that the test
+ * class itself could fail with "ApplicationContext failure threshold exceeded" instead of loading its context.
+ * Therefore, the warm-up only runs if {@code spring.test.context.failure.threshold} is greater than 1,
+ * e.g., {@code 2}. Failures of the warm-up are logged.
+ * <p>
+ * This listener is registered in {@code META-INF/services}.
+ */
+@Slf4j
+public class ContextWarmupListener implements TestExecutionListener {
+
+    private static final String ENABLED_PROPERTY = "meitrex.context-cache.warmup";
+    private static final String FAILURE_THRESHOLD_PROPERTY = "spring.test.context.failure.threshold";
+
+    @Override
+    public void testPlanExecutionStarted(final TestPlan testPlan) {
+        if (!Boolean.getBoolean(ENABLED_PROPERTY)) {
+            return;
+        }
+        final String failureThreshold = SpringProperties.getProperty(FAILURE_THRESHOLD_PROPERTY);
+        if (failureThreshold == null || Integer.parseInt(failureThreshold.strip()) <= 1) {
+            log.warn("Spring contexts are not warmed up, as a failed warm-up would make the test class fail. "
+                     + "Set {} to at least 2 to warm them up.", FAILURE_THRESHOLD_PROPERTY);
+            return;
+        }
+
+        final Map<MergedContextConfiguration, Class<?>> testClasses = new LinkedHashMap<>();
+        for (final TestIdentifier root : testPlan.getRoots()) {
+            collectTestClasses(testPlan, root, testClasses);
+        }
+        final List<Class<?>> toWarmUp = testClasses.values().stream()
+                .filter(testClass -> !dependsOnTestClassSetup(testClass))
+                .limit(ContextCacheUtils.retrieveMaxCacheSize())
+                .toList();
+
+        Thread.ofPlatform()
+                .name("meitrex-context-warmup")
+                .daemon()
+                .start(() -> warmUp(toWarmUp));
+    }
+
+    private static void collectTestClasses(final TestPlan testPlan,
+                                           final TestIdentifier identifier,
+                                           final Map<MergedContextConfiguration, Class<?>> testClasses) {
+        if (identifier.getSource().orElse(null) instanceof ClassSource classSource) {
+            try {
+                final Class<?> testClass = classSource.getJavaClass();
+                if (TestContextAnnotationUtils.hasAnnotation(testClass, GraphQlApiTest.class)) {
+                    testClasses.putIfAbsent(ContextFingerprint.of(testClass).configuration(), testClass);
+                }
+            } catch (final RuntimeException e) {
+                log.debug("Could not compute the context configuration of {}", classSource.getClassName(), e);
+            }
+        }
+        for (final TestIdentifier child : testPlan.getChildren(identifier)) {
+            collectTestClasses(testPlan, child, testClasses);
+        }
+    }
+
+    /**
+     * @return true if the context needs containers or properties that are set up when the test class runs
+     */
+    private static boolean dependsOnTestClassSetup(final Class<?> testClass) {
+        for (Class<?> current = testClass; current != null; current = current.getEnclosingClass()) {
+            if (!AnnotationSupport.findAnnotatedFields(current, Container.class).isEmpty()
+                || !AnnotationSupport.findAnnotatedMethods(current, DynamicPropertySource.class,
+                    HierarchyTraversalMode.TOP_DOWN).isEmpty()) {
+                log.info("Not warming up the Spring context of {}, as it depends on the setup of the test class",
+                        testClass.getName());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void warmUp(final List<Class<?>> testClasses) {
+        // the contexts need the database, as they do when loaded by the test classes
+        MeitrexPostgresSqlContainer.getInstance().start();
+
+        for (final Class<?> testClass : testClasses) {
+            final long start = System.nanoTime();
+            try {
+                new TestContextManager(testClass).getTestContext().getApplicationContext();
+                log.info("Warmed up the Spring context of {} in {} ms",
+                        testClass.getName(), (System.nanoTime() - start) / 1_000_000);
+            } catch (final RuntimeException e) {
+                log.warn("Could not warm up the Spring context of {}", testClass.getName(), e);
+            }
+        }
+    }
+}
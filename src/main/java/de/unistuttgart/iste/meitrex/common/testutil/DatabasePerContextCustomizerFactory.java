@@ -0,0 +1,75 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ContextConfigurationAttributes;
+import org.springframework.test.context.ContextCustomizer;
+import org.springframework.test.context.ContextCustomizerFactory;
+import org.springframework.test.context.MergedContextConfiguration;
+import org.springframework.test.context.TestContextAnnotationUtils;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Gives each Spring context of a {@link GraphQlApiTest} its own database in the {@link MeitrexPostgresSqlContainer},
+ * if the system property {@code meitrex.postgres.database-per-context} is {@code true}.
+ * <p>
+ * This makes it possible to run test classes that use different Spring contexts in parallel, e.g., with
+ * {@code junit.jupiter.execution.parallel.enabled=true}. Tests that share a Spring context also share its
+ * database, so {@link ClearDatabase} runs them one after another.
+ * <p>
+ * This factory is registered in {@code META-INF/spring.factories}. All created customizers are equal, so
+ * test classes share Spring contexts exactly as they would without it.
+ */
+@Slf4j
+public class DatabasePerContextCustomizerFactory implements ContextCustomizerFactory {
+
+    private static final String ENABLED_PROPERTY = "meitrex.postgres.database-per-context";
+
+    @Override
+    public ContextCustomizer createContextCustomizer(final Class<?> testClass,
+                                                     final List<ContextConfigurationAttributes> configAttributes) {
+        if (!Boolean.getBoolean(ENABLED_PROPERTY)
+            || !TestContextAnnotationUtils.hasAnnotation(testClass, GraphQlApiTest.class)) {
+            return null;
+        }
+        return new DatabasePerContextCustomizer();
+    }
+
+    private static final class DatabasePerContextCustomizer implements ContextCustomizer {
+
+        @Override
+        public void customizeContext(final ConfigurableApplicationContext context,
+                                     final MergedContextConfiguration mergedConfig) {
+            final MeitrexPostgresSqlContainer container = MeitrexPostgresSqlContainer.getInstance();
+            container.start();
+
+            final String databaseName;
+            try {
+                databaseName = container.createDatabase();
+            } catch (final SQLException e) {
+                throw new IllegalStateException("Could not create a database for the Spring context", e);
+            }
+            log.info("Using database {} for the context of {}", databaseName, mergedConfig.getTestClass().getName());
+
+            TestPropertyValues.of(
+                    "spring.datasource.url=" + container.getJdbcUrl(databaseName),
+                    "spring.datasource.username=" + container.getUsername(),
+                    "spring.datasource.password=" + container.getPassword()
+            ).applyTo(context);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            // all customizers are equal, so that the customizer does not affect the context cache key
+            return obj != null && obj.getClass() == getClass();
+        }
+
+        @Override
+        public int hashCode() {
+            return DatabasePerContextCustomizer.class.hashCode();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.lang.annotation.*;
+
+/**
+ * Use this annotation in tests together with {@link ClearDatabase} to select
+ * how the database is reset after each test.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     &#64;DatabaseResetStrategy(DatabaseResetStrategy.Strategy.TRUNCATE)
+ *     public class MyTest {
+ *       // ...
+ * </pre>
+ * If the annotation is not present, {@link Strategy#DELETE} is used.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface DatabaseResetStrategy {
+
+    Strategy value();
+
+    enum Strategy {
+        /**
+         * Deletes the rows of every table with a separate {@code DELETE FROM} statement.
+         * Tables that cannot be deleted yet because of foreign key constraints are retried.
+         */
+        DELETE,
+        /**
+         * Clears all tables with a single {@code TRUNCATE ... RESTART IDENTITY CASCADE} statement.
+         * Falls back to {@link #DELETE} if the database is not a PostgreSQL database.
+         */
+        TRUNCATE,
+        /**
+         * Only clears the tables that were written to since the last reset.
+         * Statement-level triggers, installed once on every table, record each table that receives
+         * an {@code INSERT} in a tracking table. As the database is empty before each test, these are
+         * the only tables that can contain rows afterwards.
+         * Falls back to {@link #DELETE} if the database is not a PostgreSQL database.
+         */
+        DIRTY_TABLES,
+        /**
+         * Saves the database as a template database when the test class starts, i.e., after the schema has been
+         * created and the fixtures loaded by the Spring context are in place. After each test, the database is
+         * dropped and recreated from the template. The cost of a reset does not depend on the amount of data.
+         * Falls back to {@link #DELETE} if the database is not a database of {@link MeitrexPostgresSqlContainer}.
+         */
+        SNAPSHOT
+    }
+}
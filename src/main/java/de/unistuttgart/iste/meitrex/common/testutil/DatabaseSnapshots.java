@@ -0,0 +1,98 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of the snapshots of the databases of {@link MeitrexPostgresSqlContainer}.
+ * <p>
+ * Each data source, i.e., each Spring context, gets its own snapshot, which is taken the first time
+ * a test class using the data source starts. At that time, the schema has been created and the fixtures
+ * loaded during the start of the context are in place.
+ * Used by {@link ClearDatabase} for the {@link DatabaseResetStrategy.Strategy#SNAPSHOT} strategy.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class DatabaseSnapshots {
+
+    private static final String SNAPSHOT_PREFIX = "meitrex_snapshot_";
+
+    private static final AtomicInteger SNAPSHOT_COUNTER = new AtomicInteger();
+    private static final Map<DataSource, Snapshot> SNAPSHOTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * @param dataSource the data source
+     * @return true if the data source connects to a database of {@link MeitrexPostgresSqlContainer}
+     */
+    static boolean isSupported(final DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return MeitrexPostgresSqlContainer.getInstance().isDatabaseOfContainer(connection.getMetaData().getURL());
+        }
+    }
+
+    /**
+     * Creates a snapshot of the database of the data source, unless one has already been created.
+     *
+     * @param dataSource the data source
+     */
+    static void ensureSnapshot(final DataSource dataSource) throws SQLException {
+        synchronized (SNAPSHOTS) {
+            if (SNAPSHOTS.containsKey(dataSource)) {
+                return;
+            }
+
+            final String databaseName;
+            try (Connection connection = dataSource.getConnection()) {
+                databaseName = connection.getCatalog();
+            }
+            final String snapshotName = SNAPSHOT_PREFIX + SNAPSHOT_COUNTER.incrementAndGet();
+
+            MeitrexPostgresSqlContainer.getInstance().createSnapshot(databaseName, snapshotName);
+            evictConnections(dataSource);
+
+            SNAPSHOTS.put(dataSource, new Snapshot(databaseName, snapshotName));
+        }
+    }
+
+    /**
+     * Replaces the database of the data source with its snapshot.
+     *
+     * @param dataSource the data source
+     */
+    static void restore(final DataSource dataSource) throws SQLException {
+        final Snapshot snapshot = SNAPSHOTS.get(dataSource);
+        if (snapshot == null) {
+            throw new IllegalStateException("No snapshot has been created for this data source");
+        }
+
+        MeitrexPostgresSqlContainer.getInstance().restoreSnapshot(snapshot.databaseName(), snapshot.snapshotName());
+        evictConnections(dataSource);
+        DirtyTableTracker.discard(dataSource);
+    }
+
+    /**
+     * The open connections of the data source have been terminated by the database.
+     * If the data source is a connection pool, the pool must not hand out these connections anymore.
+     */
+    private static void evictConnections(final DataSource dataSource) throws SQLException {
+        if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+            return;
+        }
+        final HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        if (pool != null) {
+            pool.softEvictConnections();
+        }
+    }
+
+    private record Snapshot(String databaseName, String snapshotName) {
+    }
+}
@@ -0,0 +1,42 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.lang.annotation.*;
+
+/**
+ * Use this annotation on a test class or test method together with {@link DatasetLoader} to
+ * load fixture files into the database before each test.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     &#64;Dataset({"course.csv", "chapter.json"})
+ *     public class MyTest {
+ *       // ...
+ * </pre>
+ * The files are classpath resources, resolved relative to the test class unless they start with {@code /}.
+ * The name of a file without its extension is the name of the table it is loaded into, e.g.,
+ * {@code public.course.csv} is loaded into {@code public.course}. Supported formats are:
+ * <ul>
+ *     <li>{@code .csv}: the first line contains the column names, the other lines the rows in the CSV format of
+ *     PostgreSQL's {@code COPY}. An empty unquoted value is NULL, {@code ""} is an empty string.</li>
+ *     <li>{@code .json}: an array of objects with the column names as keys. Missing keys and {@code null} are NULL,
+ *     nested objects and arrays are written as JSON, e.g., for {@code jsonb} columns.</li>
+ * </ul>
+ * Datasets of the class are loaded before datasets of the method.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Inherited
+public @interface Dataset {
+
+    /**
+     * The fixture files to load.
+     */
+    String[] value();
+
+    /**
+     * If true, the loaded tables are analyzed after loading, so that the query planner
+     * uses statistics of the loaded data.
+     */
+    boolean analyze() default true;
+}
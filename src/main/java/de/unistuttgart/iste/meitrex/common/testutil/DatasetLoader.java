@@ -0,0 +1,256 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JUnit test extension that loads the fixture files of {@link Dataset} annotations into the database before each test.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;ExtendWith(DatasetLoader.class)
+ *     &#64;Dataset("course.csv")
+ *     public class MyTest {
+ *       // ...
+ * </pre>
+ * The files are written with PostgreSQL's {@code COPY} protocol, which is much faster than inserting rows one by one.
+ * Tables are loaded in the order of their foreign keys, so referenced tables are loaded first.
+ * Parsed files are cached for the whole test run, so a file used by several test classes is only read once.
+ * <p>
+ * The rows are removed again by {@link ClearDatabase}. If the test is isolated by {@link TransactionalRollback},
+ * the rows are written in the test transaction and rolled back with it. <br>
+ * This extension is automatically used by {@link GraphQlApiTest}.
+ */
+@Slf4j
+public class DatasetLoader implements BeforeEachCallback {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // soft references, so that large fixtures can be reclaimed if memory gets low
+    private static final Map<URL, SoftReference<Fixture>> FIXTURES = new ConcurrentHashMap<>();
+
+    @Override
+    public void beforeEach(final ExtensionContext context) throws SQLException {
+        final List<Dataset> datasets = findDatasets(context);
+        if (datasets.isEmpty()) {
+            return;
+        }
+        final long start = System.nanoTime();
+
+        final DataSource dataSource = SpringExtension.getApplicationContext(context).getBean("dataSource", DataSource.class);
+        final TableDependencyGraph graph = TableDependencyGraph.of(dataSource);
+        if (!graph.isPostgres()) {
+            throw new ExtensionConfigurationException("Datasets can only be loaded into a PostgreSQL database");
+        }
+
+        final List<Fixture> fixtures = new ArrayList<>();
+        final Set<String> tablesToAnalyze = new LinkedHashSet<>();
+        for (final Dataset dataset : datasets) {
+            for (final String path : dataset.value()) {
+                final Fixture fixture = getFixture(context.getRequiredTestClass(), path);
+                fixtures.add(fixture);
+                if (dataset.analyze()) {
+                    tablesToAnalyze.add(fixture.table());
+                }
+            }
+        }
+
+        // the sort is stable, so files of the same table and tables unknown to the graph keep their order
+        final Map<String, Integer> loadOrder = getLoadOrder(graph);
+        fixtures.sort(Comparator.comparingInt(fixture ->
+                loadOrder.getOrDefault(unqualifiedName(fixture.table()), Integer.MAX_VALUE)));
+
+        load(dataSource, fixtures, tablesToAnalyze);
+        TestPhaseTimer.addTime(context, TestPhase.DATASET_LOADING, System.nanoTime() - start);
+    }
+
+    private static List<Dataset> findDatasets(final ExtensionContext context) {
+        final List<Dataset> datasets = new ArrayList<>(2);
+        AnnotationSupport.findAnnotation(context.getTestClass(), Dataset.class).ifPresent(datasets::add);
+        AnnotationSupport.findAnnotation(context.getTestMethod(), Dataset.class).ifPresent(datasets::add);
+        return datasets;
+    }
+
+    private static void load(final DataSource dataSource,
+                             final List<Fixture> fixtures,
+                             final Set<String> tablesToAnalyze) throws SQLException {
+        final long start = System.nanoTime();
+        long rows = 0;
+
+        // takes part in the transaction of the test if there is one
+        final Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            for (final Fixture fixture : fixtures) {
+                if (fixture.isEmpty()) {
+                    // COPY needs at least one column, which files without rows may not name
+                    continue;
+                }
+                rows += PostgresBulkCopy.copyIn(connection, fixture.copyStatement(), fixture.openData());
+            }
+            if (!tablesToAnalyze.isEmpty()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("ANALYZE " + String.join(", ", tablesToAnalyze));
+                }
+            }
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+
+        log.debug("Loaded {} rows from {} dataset file(s) in {} ms",
+                rows, fixtures.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return the position of each table in the load order, i.e., the reverse deletion order
+     */
+    private static Map<String, Integer> getLoadOrder(final TableDependencyGraph graph) {
+        final List<String> tables = graph.getTablesInDeletionOrder();
+        final Map<String, Integer> loadOrder = new HashMap<>();
+        for (int i = 0; i < tables.size(); i++) {
+            loadOrder.put(tables.get(i).toLowerCase(Locale.ROOT), tables.size() - 1 - i);
+        }
+        return loadOrder;
+    }
+
+    private static String unqualifiedName(final String table) {
+        return table.substring(table.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static Fixture getFixture(final Class<?> testClass, final String path) {
+        final URL url = testClass.getResource(path);
+        if (url == null) {
+            throw new ExtensionConfigurationException("Dataset file not found: " + path);
+        }
+
+        final SoftReference<Fixture> cached = FIXTURES.get(url);
+        Fixture fixture = cached != null ? cached.get() : null;
+        if (fixture == null) {
+            fixture = parseFixture(url);
+            FIXTURES.put(url, new SoftReference<>(fixture));
+        }
+        return fixture;
+    }
+
+    private static Fixture parseFixture(final URL url) {
+        final String fileName = url.getPath().substring(url.getPath().lastIndexOf('/') + 1);
+        final int extensionStart = fileName.lastIndexOf('.');
+        if (extensionStart <= 0) {
+            throw new ExtensionConfigurationException("Dataset file has no extension: " + url);
+        }
+        final String table = fileName.substring(0, extensionStart);
+        final String extension = fileName.substring(extensionStart + 1).toLowerCase(Locale.ROOT);
+
+        try (InputStream inputStream = url.openStream()) {
+            final byte[] content = inputStream.readAllBytes();
+            return switch (extension) {
+                case "csv" -> parseCsv(table, content);
+                case "json" -> parseJson(table, content);
+                default -> throw new ExtensionConfigurationException("Unsupported dataset format: " + url);
+            };
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not read dataset file " + url, e);
+        }
+    }
+
+    private static Fixture parseCsv(final String table, final byte[] content) {
+        int headerEnd = 0;
+        while (headerEnd < content.length && content[headerEnd] != '\n') {
+            headerEnd++;
+        }
+        final String header = new String(content, 0, headerEnd, StandardCharsets.UTF_8).strip();
+
+        final List<String> columns = Arrays.stream(header.split(","))
+                .map(column -> column.strip().replace("\"", ""))
+                .toList();
+
+        // the rows are sent as they are, without copying them
+        final int dataStart = Math.min(headerEnd + 1, content.length);
+        return new Fixture(table, columns, content, dataStart);
+    }
+
+    private static Fixture parseJson(final String table, final byte[] content) throws IOException {
+        final JsonNode rows = OBJECT_MAPPER.readTree(content);
+        if (!rows.isArray()) {
+            throw new ExtensionConfigurationException("JSON dataset of table " + table + " must be an array of objects");
+        }
+
+        final Set<String> columns = new LinkedHashSet<>();
+        for (final JsonNode row : rows) {
+            row.fieldNames().forEachRemaining(columns::add);
+        }
+        if (columns.isEmpty() && !rows.isEmpty()) {
+            throw new ExtensionConfigurationException("JSON dataset of table " + table + " has rows without fields");
+        }
+
+        final StringBuilder csv = new StringBuilder();
+        for (final JsonNode row : rows) {
+            boolean first = true;
+            for (final String column : columns) {
+                if (!first) {
+                    csv.append(',');
+                }
+                first = false;
+
+                final JsonNode value = row.get(column);
+                if (value != null && !value.isNull()) {
+                    PostgresBulkCopy.appendCsvField(csv, value.isValueNode() ? value.asText() : value.toString());
+                }
+            }
+            csv.append('\n');
+        }
+
+        return new Fixture(table, List.copyOf(columns), csv.toString().getBytes(StandardCharsets.UTF_8), 0);
+    }
+
+    /**
+     * A parsed dataset file.
+     *
+     * @param table     the table to load the file into
+     * @param columns   the columns of the rows
+     * @param data      the rows in CSV format, starting at {@code dataStart}
+     * @param dataStart the index of the first byte of the rows in {@code data}
+     */
+    private record Fixture(String table, List<String> columns, byte[] data, int dataStart) {
+
+        String copyStatement() {
+            return "COPY %s (%s) FROM STDIN WITH (FORMAT csv)".formatted(table, String.join(", ", columns));
+        }
+
+        /**
+         * @return true if the file has no rows
+         */
+        boolean isEmpty() {
+            for (int i = dataStart; i < data.length; i++) {
+                if (!Character.isWhitespace(data[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        InputStream openData() {
+            return new ByteArrayInputStream(data, dataStart, data.length - dataStart);
+        }
+    }
+}
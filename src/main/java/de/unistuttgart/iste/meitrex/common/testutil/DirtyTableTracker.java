@@ -0,0 +1,103 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.*;
+
+/**
+ * Keeps track of the tables of a PostgreSQL database that were written to since the last reset.
+ * <p>
+ * A statement-level {@code AFTER INSERT} trigger is created on every tracked table.
+ * The trigger records the name of the table in a tracking table. Resetting truncates exactly the
+ * recorded tables, together with the tracking table itself, in a single statement.
+ * <p>
+ * There is one tracker per data source, shared by all test classes, so the triggers are only
+ * installed once per Spring context.
+ * Used by {@link ClearDatabase} for the {@link DatabaseResetStrategy.Strategy#DIRTY_TABLES} strategy.
+ */
+class DirtyTableTracker {
+
+    static final String TRACKING_TABLE = "meitrex_dirty_tables";
+
+    private static final String TRACKING_FUNCTION = "meitrex_mark_table_dirty";
+    private static final String TRACKING_TRIGGER = "meitrex_track_dirty_table";
+
+    private static final Map<DataSource, DirtyTableTracker> TRACKERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // the tracker must not reference the data source, otherwise the weak key could never be collected
+    private final Set<String> trackedTables = new HashSet<>();
+
+    /**
+     * Returns the tracker of the given data source.
+     *
+     * @param dataSource the data source
+     * @return the tracker
+     */
+    static DirtyTableTracker forDataSource(final DataSource dataSource) {
+        return TRACKERS.computeIfAbsent(dataSource, key -> new DirtyTableTracker());
+    }
+
+    /**
+     * Discards the tracker of the given data source. Must be called if the database has been replaced,
+     * as the triggers may be missing in the new database.
+     *
+     * @param dataSource the data source
+     */
+    static void discard(final DataSource dataSource) {
+        TRACKERS.remove(dataSource);
+    }
+
+    /**
+     * Clears all tables that were written to since the last reset.
+     * Tables of the given list that are not tracked yet are tracked from now on. As they may contain
+     * rows written before tracking started, they are cleared as well.
+     *
+     * @param dataSource the data source of this tracker
+     * @param tables     the tables to track
+     */
+    synchronized void reset(final DataSource dataSource, final List<String> tables) {
+        final JdbcTemplate template = new JdbcTemplate(dataSource);
+        final Set<String> tablesToTruncate = new LinkedHashSet<>();
+
+        final List<String> untrackedTables = tables.stream()
+                .filter(table -> !trackedTables.contains(table))
+                .toList();
+        if (!untrackedTables.isEmpty()) {
+            install(template, untrackedTables);
+            tablesToTruncate.addAll(untrackedTables);
+        }
+        if (trackedTables.isEmpty()) {
+            // nothing to track, the tracking table has not been created
+            return;
+        }
+
+        tablesToTruncate.addAll(template.queryForList("SELECT table_name FROM " + TRACKING_TABLE, String.class));
+        if (tablesToTruncate.isEmpty()) {
+            return;
+        }
+
+        tablesToTruncate.add(TRACKING_TABLE);
+        template.execute("TRUNCATE TABLE " + String.join(", ", tablesToTruncate) + " RESTART IDENTITY CASCADE");
+    }
+
+    private void install(final JdbcTemplate template, final List<String> tables) {
+        if (trackedTables.isEmpty()) {
+            template.execute("CREATE TABLE IF NOT EXISTS " + TRACKING_TABLE + " (table_name TEXT PRIMARY KEY)");
+            template.execute("""
+                    CREATE OR REPLACE FUNCTION %s() RETURNS TRIGGER AS $$
+                    BEGIN
+                        INSERT INTO %s (table_name) VALUES (TG_TABLE_NAME) ON CONFLICT DO NOTHING;
+                        RETURN NULL;
+                    END;
+                    $$ LANGUAGE plpgsql
+                    """.formatted(TRACKING_FUNCTION, TRACKING_TABLE));
+        }
+
+        for (final String table : tables) {
+            template.execute("CREATE OR REPLACE TRIGGER %s AFTER INSERT ON %s FOR EACH STATEMENT EXECUTE FUNCTION %s()"
+                    .formatted(TRACKING_TRIGGER, table, TRACKING_FUNCTION));
+            trackedTables.add(table);
+        }
+    }
+}
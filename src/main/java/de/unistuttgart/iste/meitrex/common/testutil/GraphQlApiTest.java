@@ -8,16 +8,34 @@ import java.lang.annotation.*;
 
 /**
  * This annotation is a combination of {@link SpringBootTest} and the test extensions
- * {@link GraphQlTesterParameterResolver}, {@link MeitrexPostgresSqlContainer} and {@link ClearDatabase}.
+ * {@link ContextCacheExtension}, {@link GraphQlTesterParameterResolver}, {@link MeitrexPostgresSqlContainer}, {@link TestPhaseTimer},
+ * {@link ClearDatabase}, {@link TransactionalRollback}, {@link DatasetLoader}, {@link QueryRecordingExtension} and
+ * {@link QueryPlanCaptureExtension}.
  */
+// first, so that test classes exceeding the context limit fail before anything else is prepared
+@ExtendWith(ContextCacheExtension.class)
 @ExtendWith(GraphQlTesterParameterResolver.class)
 @ExtendWith(MeitrexPostgresSqlContainer.class)
 @Testcontainers
+// after the container, which must run before the context is loaded, and before the extensions it times
+@ExtendWith(TestPhaseTimer.class)
 @ExtendWith(ClearDatabase.class)
+@ExtendWith(TransactionalRollback.class)
+// after TransactionalRollback, so that datasets are loaded in the test transaction
+@ExtendWith(DatasetLoader.class)
+// last, so that only the statements of the test itself are recorded
+@ExtendWith(QueryRecordingExtension.class)
+@ExtendWith(QueryPlanCaptureExtension.class)
 // set allow-bean-definition-overriding to true to allow overriding of spring beans in tests
 @SpringBootTest({"spring.main.allow-bean-definition-overriding=true"})
 @Target({ElementType.TYPE})
 @Retention(RetentionPolicy.RUNTIME)
 @Inherited
 public @interface GraphQlApiTest {
+
+    /**
+     * If true, each test runs in a transaction that is rolled back after the test,
+     * instead of clearing the database afterwards. See {@link TransactionalRollback}.
+     */
+    boolean rollback() default false;
 }
@@ -0,0 +1,71 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the GraphQL requests executed by an application context, with the fetch counts and times of their fields
+ * and the batches of their DataLoaders.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     &#64;Import(GraphQlInstrumentationConfiguration.class)
+ *     public class MyTest {
+ *         &#64;Test
+ *         void test(GraphQlTester tester, GraphQlExecutionRecorder executionRecorder) {
+ *             List&lt;RecordedGraphQlExecution&gt; executions =
+ *                     executionRecorder.recordDuring(() -&gt; tester.document(query).execute());
+ *             assertThat(executions.getFirst(), resolvedInSingleBatch("Course.chapters"));
+ *         }
+ * </pre>
+ * The recorder is cleared before each test by {@link QueryRecordingExtension}.
+ *
+ * @see MeitrexMatchers#resolvedInSingleBatch(String)
+ */
+public class GraphQlExecutionRecorder {
+
+    private final List<RecordedGraphQlExecution> executions = new ArrayList<>();
+
+    void record(final RecordedGraphQlExecution execution) {
+        synchronized (executions) {
+            executions.add(execution);
+        }
+    }
+
+    /**
+     * @return the requests recorded since the recorder was last cleared, in the order they completed
+     */
+    public List<RecordedGraphQlExecution> getExecutions() {
+        synchronized (executions) {
+            return List.copyOf(executions);
+        }
+    }
+
+    /**
+     * Removes all recorded requests.
+     */
+    public void clear() {
+        synchronized (executions) {
+            executions.clear();
+        }
+    }
+
+    /**
+     * Runs the given action, e.g., a GraphQL request, and returns the requests recorded while it ran.
+     * The requests are also kept in the recorder.
+     *
+     * @param action the action
+     * @return the requests recorded while the action ran
+     */
+    public List<RecordedGraphQlExecution> recordDuring(final Runnable action) {
+        final int start;
+        synchronized (executions) {
+            start = executions.size();
+        }
+        action.run();
+        synchronized (executions) {
+            return List.copyOf(executions.subList(start, executions.size()));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import graphql.execution.instrumentation.Instrumentation;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.stats.SimpleStatisticsCollector;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.graphql.execution.BatchLoaderRegistry;
+import org.springframework.graphql.execution.DefaultBatchLoaderRegistry;
+
+/**
+ * This test configuration records all GraphQL requests executed by the application in a
+ * {@link GraphQlExecutionRecorder} bean, with the fetch counts and times of their fields and the batches of their
+ * DataLoaders.
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     &#64;Import(GraphQlInstrumentationConfiguration.class)
+ *     public class Test {
+ * </pre>
+ * The recorder can then be injected into test methods, see {@link GraphQlExecutionRecorder}.
+ * <p>
+ * DataLoaders do not collect statistics by default, so this configuration replaces the {@link BatchLoaderRegistry}
+ * with one whose DataLoaders do. DataLoaders registered with their own options do not collect statistics.
+ */
+@TestConfiguration
+public class GraphQlInstrumentationConfiguration {
+
+    @Bean
+    public GraphQlExecutionRecorder graphQlExecutionRecorder() {
+        return new GraphQlExecutionRecorder();
+    }
+
+    @Bean
+    public Instrumentation recordingInstrumentation(final GraphQlExecutionRecorder recorder) {
+        return new RecordingInstrumentation(recorder);
+    }
+
+    @Bean
+    public BatchLoaderRegistry batchLoaderRegistry() {
+        return new DefaultBatchLoaderRegistry(() -> DataLoaderOptions.newOptions()
+                .setStatisticsCollector(SimpleStatisticsCollector::new));
+    }
+}
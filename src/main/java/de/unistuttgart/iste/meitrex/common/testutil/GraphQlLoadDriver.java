@@ -0,0 +1,241 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
+import lombok.Builder;
+import lombok.Singular;
+import org.springframework.graphql.test.tester.GraphQlTester;
+import org.springframework.graphql.test.tester.HttpGraphQlTester;
+import org.springframework.graphql.test.tester.WebGraphQlTester;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Sends a GraphQL request many times from concurrent clients and measures throughput and latency.
+ * <p>
+ * Usage:
+ * <pre>
+ *     LoadTestReport report = GraphQlLoadDriver.builder()
+ *             .tester(tester)
+ *             .document("query { courses { elements { id } } }")
+ *             .users(TestUsers.generator(42).build().stream(1000).toList())
+ *             .concurrency(64)
+ *             .requests(10_000)
+ *             .warmupRequests(500)
+ *             .build()
+ *             .run();
+ * </pre>
+ * Each client runs on its own virtual thread and sends the next request as soon as the previous one has completed.
+ * If users are given, the requests are sent with their {@link HeaderUtils#CURRENT_USER_HEADER} header,
+ * in turn. A request fails if it throws or if the response contains errors.
+ * <p>
+ * The tester can be the MockMvc based tester injected by {@link GraphQlTesterParameterResolver}, or a tester of a
+ * running server, see {@link #forServer(URI)}. {@link GraphQlLoadTest} creates drivers for both cases.
+ * Note that requests are sent from other threads than the test thread, so they are not isolated by
+ * {@link TransactionalRollback}.
+ */
+public class GraphQlLoadDriver {
+
+    private static final int MAX_FAILURE_SAMPLES = 10;
+
+    private final WebGraphQlTester tester;
+    private final String document;
+    private final String documentName;
+    private final String operationName;
+    private final Map<String, Object> variables;
+    private final List<LoggedInUser> users;
+    private final int concurrency;
+    private final int requests;
+    private final int warmupRequests;
+    private final String name;
+    private final String target;
+    private final Consumer<LoadTestReport> reportListener;
+
+    // testers with the header of each user, created when the user is first needed
+    private final AtomicReferenceArray<WebGraphQlTester> userTesters;
+
+    /**
+     * @param tester         the tester to send the requests with
+     * @param document       the GraphQL document to send
+     * @param documentName   the name of a document file to send, see {@link GraphQlTester#documentName(String)},
+     *                       used if no document is given
+     * @param operationName  the operation of the document to execute
+     * @param variables      the variables of the request
+     * @param users          the users to send the requests as, in turn. If empty, the headers of the tester are used,
+     *                       which include the {@link InjectCurrentUserHeader} user for drivers of {@link GraphQlLoadTest}s.
+     * @param concurrency    the number of concurrent clients, defaults to 16
+     * @param requests       the number of measured requests, defaults to 1000
+     * @param warmupRequests the number of requests to send before measuring, defaults to 0
+     * @param name           the name of the load test in the report
+     * @param target         the target in the report, defaults to "MockMvc"
+     * @param reportListener called with the report after each run
+     */
+    @Builder
+    private GraphQlLoadDriver(final WebGraphQlTester tester,
+                              final String document,
+                              final String documentName,
+                              final String operationName,
+                              @Singular final Map<String, Object> variables,
+                              @Singular final List<LoggedInUser> users,
+                              final Integer concurrency,
+                              final Integer requests,
+                              final Integer warmupRequests,
+                              final String name,
+                              final String target,
+                              final Consumer<LoadTestReport> reportListener) {
+        this.tester = Objects.requireNonNull(tester, "tester must be set");
+        if (document == null && documentName == null) {
+            throw new IllegalArgumentException("Either document or documentName must be set");
+        }
+        this.document = document;
+        this.documentName = documentName;
+        this.operationName = operationName;
+        this.variables = variables;
+        this.users = users;
+        this.concurrency = Objects.requireNonNullElse(concurrency, 16);
+        this.requests = Objects.requireNonNullElse(requests, 1000);
+        this.warmupRequests = Objects.requireNonNullElse(warmupRequests, 0);
+        this.name = Objects.requireNonNullElse(name, "graphql-load-test");
+        this.target = Objects.requireNonNullElse(target, "MockMvc");
+        this.reportListener = Objects.requireNonNullElse(reportListener, report -> {
+        });
+        if (this.concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.userTesters = new AtomicReferenceArray<>(users.size());
+    }
+
+    /**
+     * Creates a builder with a tester that sends requests to a running server.
+     *
+     * @param graphQlUri the URI of the GraphQL endpoint of the server, e.g., {@code http://localhost:8080/graphql}
+     * @return the builder
+     */
+    public static GraphQlLoadDriverBuilder forServer(final URI graphQlUri) {
+        return builder()
+                .tester(createServerTester(graphQlUri))
+                .target(graphQlUri.toString());
+    }
+
+    static HttpGraphQlTester createServerTester(final URI graphQlUri) {
+        final WebTestClient client = WebTestClient.bindToServer()
+                .baseUrl(graphQlUri.toString())
+                .build();
+        return HttpGraphQlTester.create(client);
+    }
+
+    /**
+     * Sends the warm-up requests and then the measured requests.
+     *
+     * @return the report of the measured requests
+     */
+    public LoadTestReport run() {
+        if (warmupRequests > 0) {
+            sendRequests(warmupRequests, new LatencyHistogram(), new Failures());
+        }
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final Failures failures = new Failures();
+        final Instant startedAt = Instant.now();
+        final long start = System.nanoTime();
+
+        sendRequests(requests, histogram, failures);
+
+        final double durationMillis = (System.nanoTime() - start) / 1_000_000.0;
+        final LoadTestReport report = new LoadTestReport(
+                name,
+                System.getProperty("meitrex.load-test.revision"),
+                startedAt.toString(),
+                target,
+                concurrency,
+                requests,
+                failures.count.sum(),
+                durationMillis,
+                durationMillis > 0 ? histogram.getCount() * 1000.0 / durationMillis : 0,
+                histogram.toLatency(),
+                histogram.toBuckets(),
+                List.copyOf(failures.samples));
+
+        reportListener.accept(report);
+        return report;
+    }
+
+    private void sendRequests(final long count, final LatencyHistogram histogram, final Failures failures) {
+        final AtomicLong nextIndex = new AtomicLong();
+
+        // closing the executor waits for all clients to finish
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                executor.execute(() -> {
+                    long index;
+                    while ((index = nextIndex.getAndIncrement()) < count) {
+                        sendRequest(index, histogram, failures);
+                    }
+                });
+            }
+        }
+    }
+
+    private void sendRequest(final long index, final LatencyHistogram histogram, final Failures failures) {
+        final GraphQlTester requestTester = getTester(index);
+        final long start = System.nanoTime();
+        try {
+            createRequest(requestTester).execute().errors().verify();
+            histogram.record(System.nanoTime() - start);
+        } catch (final AssertionError | RuntimeException e) {
+            failures.add(e);
+        }
+    }
+
+    private GraphQlTester.Request<?> createRequest(final GraphQlTester requestTester) {
+        GraphQlTester.Request<?> request = document != null
+                ? requestTester.document(document)
+                : requestTester.documentName(documentName);
+        if (operationName != null) {
+            request = request.operationName(operationName);
+        }
+        for (final Map.Entry<String, Object> variable : variables.entrySet()) {
+            request = request.variable(variable.getKey(), variable.getValue());
+        }
+        return request;
+    }
+
+    private GraphQlTester getTester(final long index) {
+        if (users.isEmpty()) {
+            return tester;
+        }
+
+        final int userIndex = (int) (index % users.size());
+        WebGraphQlTester userTester = userTesters.get(userIndex);
+        if (userTester == null) {
+            // concurrent creation is harmless, all testers of a user are equal
+            userTester = HeaderUtils.addCurrentUserHeader(tester, users.get(userIndex));
+            userTesters.set(userIndex, userTester);
+        }
+        return userTester;
+    }
+
+    private static final class Failures {
+
+        private final LongAdder count = new LongAdder();
+        private final Queue<String> samples = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger sampleCount = new AtomicInteger();
+
+        private void add(final Throwable failure) {
+            count.increment();
+            if (sampleCount.getAndIncrement() < MAX_FAILURE_SAMPLES) {
+                samples.add(failure.getClass().getSimpleName() + ": " + failure.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a test method as a load test. The method can have a parameter of type
+ * {@link GraphQlLoadDriver.GraphQlLoadDriverBuilder}, which is preconfigured with the settings of this annotation
+ * and a tester for the application context of the test. As with the testers injected by
+ * {@link GraphQlTesterParameterResolver}, the tester sends the header of the {@link InjectCurrentUserHeader} field
+ * of the test class, unless other users are set with {@code users(...)}.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlLoadTest(concurrency = 64, requests = 10_000)
+ *     void loadTest(GraphQlLoadDriver.GraphQlLoadDriverBuilder driver) {
+ *         LoadTestReport report = driver.document("query { ... }").build().run();
+ *         assertThat(report.failures(), is(0L));
+ *     }
+ * </pre>
+ * The report of each run is logged and written as JSON to {@code <report directory>/<test class>.<test method>.json}.
+ * The report directory can be overridden with the system property {@code meitrex.load-test.report-dir}.
+ * Load tests are tagged with {@code load-test}, so they can be excluded from regular test runs.
+ * The test class must be a Spring test, e.g., annotated with {@link GraphQlApiTest}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Test
+@Tag("load-test")
+@ExtendWith(GraphQlLoadTestExtension.class)
+public @interface GraphQlLoadTest {
+
+    /**
+     * The number of concurrent clients.
+     */
+    int concurrency() default 16;
+
+    /**
+     * The number of measured requests.
+     */
+    int requests() default 1000;
+
+    /**
+     * The number of requests to send before measuring.
+     */
+    int warmupRequests() default 100;
+
+    /**
+     * Where to send the requests to.
+     */
+    Target target() default Target.MOCK_MVC;
+
+    /**
+     * The directory the reports are written to.
+     */
+    String reportDirectory() default "build/load-test-reports";
+
+    enum Target {
+        /**
+         * Requests are handled by MockMvc in the test JVM, without network overhead.
+         */
+        MOCK_MVC,
+        /**
+         * Requests are sent over HTTP to the server started by the test, on the port of the property
+         * {@code local.server.port} or {@code server.port}.
+         */
+        SERVER
+    }
+}
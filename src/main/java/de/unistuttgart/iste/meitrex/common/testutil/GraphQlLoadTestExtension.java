@@ -0,0 +1,82 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolutionException;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.springframework.core.env.Environment;
+import org.springframework.graphql.test.tester.WebGraphQlTester;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * JUnit test extension that resolves {@link GraphQlLoadDriver.GraphQlLoadDriverBuilder} parameters of
+ * methods annotated with {@link GraphQlLoadTest}, and writes the reports of the drivers.
+ */
+@Slf4j
+public class GraphQlLoadTestExtension implements ParameterResolver {
+
+    @Override
+    public boolean supportsParameter(final ParameterContext parameterContext,
+                                     final ExtensionContext extensionContext) throws ParameterResolutionException {
+        return parameterContext.getParameter().getType().equals(GraphQlLoadDriver.GraphQlLoadDriverBuilder.class);
+    }
+
+    @Override
+    public Object resolveParameter(final ParameterContext parameterContext,
+                                   final ExtensionContext extensionContext) throws ParameterResolutionException {
+        final GraphQlLoadTest loadTest = AnnotationSupport
+                .findAnnotation(extensionContext.getTestMethod(), GraphQlLoadTest.class)
+                .orElseThrow(() -> new ParameterResolutionException(
+                        "GraphQlLoadDriverBuilder can only be injected into methods annotated with GraphQlLoadTest"));
+
+        if (TransactionalRollback.isActive(extensionContext)) {
+            throw new ParameterResolutionException("Load tests cannot be used with transactional rollback, "
+                                                   + "as their requests are sent from other threads");
+        }
+
+        final String name = extensionContext.getRequiredTestClass().getSimpleName()
+                            + "." + extensionContext.getRequiredTestMethod().getName();
+        final Path reportFile = Path.of(System.getProperty("meitrex.load-test.report-dir", loadTest.reportDirectory()))
+                .resolve(name + ".json");
+
+        final URI serverUri = loadTest.target() == GraphQlLoadTest.Target.SERVER ? getServerUri(extensionContext) : null;
+        final WebGraphQlTester tester = serverUri != null
+                ? GraphQlLoadDriver.createServerTester(serverUri)
+                : GraphQlTesterParameterResolver.getBaseHttpGraphQlTester(extensionContext);
+
+        return GraphQlLoadDriver.builder()
+                .tester(GraphQlTesterParameterResolver.injectCurrentUserHeaderIfNecessary(tester, extensionContext))
+                .target(serverUri != null ? serverUri.toString() : null)
+                .name(name)
+                .concurrency(loadTest.concurrency())
+                .requests(loadTest.requests())
+                .warmupRequests(loadTest.warmupRequests())
+                .reportListener(report -> writeReport(report, reportFile));
+    }
+
+    private static URI getServerUri(final ExtensionContext extensionContext) {
+        final Environment environment = SpringExtension.getApplicationContext(extensionContext).getEnvironment();
+        final String port = environment.getProperty("local.server.port", environment.getProperty("server.port"));
+        if (port == null) {
+            throw new ParameterResolutionException("Load tests against a server require a running server, "
+                                                   + "e.g., @SpringBootTest(webEnvironment = RANDOM_PORT)");
+        }
+        return URI.create("http://localhost:" + port + GraphQlTesterParameterResolver.getHttpGraphQlRoute());
+    }
+
+    private static void writeReport(final LoadTestReport report, final Path reportFile) {
+        log.info(report.summary());
+        try {
+            report.writeTo(reportFile);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not write load test report to " + reportFile, e);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.graphql.client.ClientGraphQlResponse;
+import org.springframework.graphql.client.WebSocketGraphQlClient;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.core.Disposable;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+/**
+ * Opens many GraphQL subscriptions over WebSocket, triggers events and measures how fast and how completely the
+ * events are delivered, optionally to slow clients.
+ * <p>
+ * Usage, in a test with {@code @SpringBootTest(webEnvironment = RANDOM_PORT)}:
+ * <pre>
+ *     SubscriptionLoadReport report = GraphQlSubscriptionLoadTester.forLocalServer()
+ *             .document("subscription { progressUpdated(courseId: \"...\") { userId timestamp } }")
+ *             .subscriptions(500)
+ *             .connections(50)
+ *             .trigger(i -&gt; progressService.updateProgress(...))
+ *             .triggers(1000)
+ *             .readDelay(Duration.ofMillis(2))
+ *             .slowConnections(10)
+ *             .timestampPath("progressUpdated.timestamp")
+ *             .build()
+ *             .run();
+ *     assertThat(report.missingEvents(), is(0L));
+ * </pre>
+ * The subscriptions are spread evenly over the connections. If users are given, each connection sends the
+ * {@link HeaderUtils#CURRENT_USER_HEADER} header of one of them, in turn.
+ * After all subscriptions have been sent, the tester waits for {@code settleTime}, so that the server has
+ * registered them, and then calls the trigger the given number of times. It is expected that each call
+ * causes one event on every subscription, unless {@code expectedEventsPerSubscription} is set.
+ * <p>
+ * If {@code readDelay} is set, the first {@code slowConnections} connections are slow clients: they read one
+ * WebSocket message at a time and wait for the read delay before reading the next one. The client then stops reading
+ * from the socket, so the server sees a slow reader whose send buffer fills up, see {@link ThrottledWebSocketClient}.
+ * How the server handles this, e.g., by delaying, buffering or dropping events, shows in the latency and in the
+ * missing events of the report, also of the other connections.
+ * <p>
+ * The latency of an event is measured from the call of the trigger that caused it, assuming that the n-th event
+ * of a subscription is caused by the n-th call. If {@code timestampPath} is set, it is instead measured from the
+ * timestamp at that path of the event, which must be an ISO-8601 string or epoch milliseconds.
+ * The run ends when all expected events have been received, no event has arrived for {@code idleTimeout},
+ * or after {@code timeout}.
+ */
+@Slf4j
+public class GraphQlSubscriptionLoadTester {
+
+    private static final int MAX_ERROR_SAMPLES = 10;
+    private static final long POLL_NANOS = Duration.ofMillis(10).toNanos();
+
+    private final URI uri;
+    private final WebSocketClient client;
+    private final String document;
+    private final Map<String, Object> variables;
+    private final List<LoggedInUser> users;
+    private final int connections;
+    private final int subscriptions;
+    private final IntConsumer trigger;
+    private final int triggers;
+    private final Duration triggerInterval;
+    private final int expectedEventsPerSubscription;
+    private final WebSocketClient slowClient;
+    private final int slowConnections;
+    private final String timestampPath;
+    private final Duration settleTime;
+    private final Duration idleTimeout;
+    private final Duration timeout;
+
+    private final LongAdder receivedEvents = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Queue<String> errorSamples = new ConcurrentLinkedQueue<>();
+    private final LongAccumulator lastActivityNanos = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private final LongAccumulator lastReceivedNanos = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLongArray triggerNanos;
+
+    /**
+     * @param uri                           the WebSocket URI of the GraphQL endpoint
+     * @param client                        the WebSocket client, defaults to a new {@link ReactorNettyWebSocketClient}
+     * @param document                      the subscription document
+     * @param variables                     the variables of the subscription
+     * @param users                         the users to open the connections as, in turn
+     * @param connections                   the number of WebSocket connections, defaults to 10
+     * @param subscriptions                 the number of subscriptions, defaults to 100
+     * @param trigger                       called with the index of each event to trigger, e.g., to send a mutation
+     * @param triggers                      the number of times the trigger is called, defaults to 100
+     * @param triggerInterval               the pause between two calls of the trigger, defaults to none
+     * @param expectedEventsPerSubscription the number of events each subscription should receive,
+     *                                      defaults to the number of triggers
+     * @param readDelay                     the time slow clients wait before reading each message, defaults to none
+     * @param slowConnections               the number of connections that are slow clients if a read delay is set,
+     *                                      defaults to all
+     * @param timestampPath                 the path of a timestamp in the events to measure the latency from
+     * @param settleTime                    the time to wait between subscribing and triggering, defaults to 500 ms
+     * @param idleTimeout                   the time without events after which the run ends, defaults to 2 s
+     * @param timeout                       the maximum time to wait for events, defaults to 60 s
+     */
+    @Builder
+    private GraphQlSubscriptionLoadTester(final URI uri,
+                                          final WebSocketClient client,
+                                          final String document,
+                                          @Singular final Map<String, Object> variables,
+                                          @Singular final List<LoggedInUser> users,
+                                          final Integer connections,
+                                          final Integer subscriptions,
+                                          final IntConsumer trigger,
+                                          final Integer triggers,
+                                          final Duration triggerInterval,
+                                          final Integer expectedEventsPerSubscription,
+                                          final Duration readDelay,
+                                          final Integer slowConnections,
+                                          final String timestampPath,
+                                          final Duration settleTime,
+                                          final Duration idleTimeout,
+                                          final Duration timeout) {
+        this.uri = Objects.requireNonNull(uri, "uri must be set");
+        this.client = Objects.requireNonNullElseGet(client, ReactorNettyWebSocketClient::new);
+        this.document = Objects.requireNonNull(document, "document must be set");
+        this.variables = variables;
+        this.users = users;
+        this.connections = Objects.requireNonNullElse(connections, 10);
+        this.subscriptions = Objects.requireNonNullElse(subscriptions, 100);
+        this.trigger = Objects.requireNonNull(trigger, "trigger must be set");
+        this.triggers = Objects.requireNonNullElse(triggers, 100);
+        this.triggerInterval = Objects.requireNonNullElse(triggerInterval, Duration.ZERO);
+        this.expectedEventsPerSubscription = Objects.requireNonNullElse(expectedEventsPerSubscription, this.triggers);
+        this.slowClient = readDelay == null || readDelay.isZero()
+                ? null
+                : new ThrottledWebSocketClient(this.client, readDelay);
+        this.timestampPath = timestampPath;
+        this.settleTime = Objects.requireNonNullElse(settleTime, Duration.ofMillis(500));
+        this.idleTimeout = Objects.requireNonNullElse(idleTimeout, Duration.ofSeconds(2));
+        this.timeout = Objects.requireNonNullElse(timeout, Duration.ofSeconds(60));
+        if (this.connections < 1 || this.subscriptions < this.connections) {
+            throw new IllegalArgumentException("there must be at least one connection and one subscription per connection");
+        }
+        this.slowConnections = slowClient == null ? 0 : Objects.requireNonNullElse(slowConnections, this.connections);
+        this.triggerNanos = new AtomicLongArray(this.triggers);
+    }
+
+    /**
+     * Creates a builder for the server started by the test, on the port of the system property {@code server.port}
+     * and the path of {@code spring.graphql.websocket.path}, like the
+     * {@link org.springframework.graphql.test.tester.WebSocketGraphQlTester} of {@link GraphQlTesterParameterResolver}.
+     *
+     * @return the builder
+     */
+    public static GraphQlSubscriptionLoadTesterBuilder forLocalServer() {
+        return builder().uri(URI.create("ws://localhost:" + System.getProperty("server.port")
+                                        + System.getProperty("spring.graphql.websocket.path", "/graphql-ws")));
+    }
+
+    /**
+     * Opens the subscriptions, triggers the events and waits for them. The tester can only be run once.
+     *
+     * @return the report of the run
+     */
+    public SubscriptionLoadReport run() {
+        final List<WebSocketGraphQlClient> clients = new ArrayList<>(connections);
+        final List<Disposable> subscriptionHandles = new ArrayList<>(subscriptions);
+        try {
+            for (int i = 0; i < connections; i++) {
+                final WebSocketGraphQlClient graphQlClient = createClient(i);
+                clients.add(graphQlClient);
+                graphQlClient.start().block(timeout);
+            }
+            for (int i = 0; i < subscriptions; i++) {
+                subscriptionHandles.add(subscribe(clients.get(i % connections)));
+            }
+            LockSupport.parkNanos(settleTime.toNanos());
+
+            final long start = System.nanoTime();
+            triggerEvents();
+            awaitEvents();
+
+            final SubscriptionLoadReport report = createReport(start);
+            log.info(report.summary());
+            return report;
+        } finally {
+            subscriptionHandles.forEach(Disposable::dispose);
+            for (final WebSocketGraphQlClient graphQlClient : clients) {
+                graphQlClient.stop().block(timeout);
+            }
+        }
+    }
+
+    private WebSocketGraphQlClient createClient(final int index) {
+        final WebSocketGraphQlClient.Builder<?> builder =
+                WebSocketGraphQlClient.builder(uri, index < slowConnections ? slowClient : client);
+        if (!users.isEmpty()) {
+            builder.header(HeaderUtils.CURRENT_USER_HEADER,
+                    HeaderUtils.getCurrentUserHeaderValue(users.get(index % users.size())));
+        }
+        return builder.build();
+    }
+
+    private Disposable subscribe(final WebSocketGraphQlClient graphQlClient) {
+        final AtomicInteger eventIndex = new AtomicInteger();
+
+        return graphQlClient.document(document)
+                .variables(variables)
+                .executeSubscription()
+                .subscribe(response -> onReceived(response, eventIndex.getAndIncrement()),
+                        error -> recordError("subscription failed: " + error));
+    }
+
+    private void onReceived(final ClientGraphQlResponse response, final int eventIndex) {
+        final long now = System.nanoTime();
+        receivedEvents.increment();
+        lastActivityNanos.accumulate(now);
+        lastReceivedNanos.accumulate(now);
+
+        if (!response.isValid() || !response.getErrors().isEmpty()) {
+            recordError(response.getErrors().toString());
+            return;
+        }
+
+        if (timestampPath != null) {
+            final Object timestamp = response.field(timestampPath).getValue();
+            if (timestamp != null) {
+                latency.record(Duration.between(parseTimestamp(timestamp), Instant.now()).toNanos());
+            }
+        } else if (eventIndex < triggers && triggerNanos.get(eventIndex) != 0) {
+            latency.record(now - triggerNanos.get(eventIndex));
+        }
+    }
+
+    private void triggerEvents() {
+        for (int i = 0; i < triggers; i++) {
+            triggerNanos.set(i, System.nanoTime());
+            trigger.accept(i);
+            if (!triggerInterval.isZero()) {
+                LockSupport.parkNanos(triggerInterval.toNanos());
+            }
+        }
+        lastActivityNanos.accumulate(System.nanoTime());
+    }
+
+    private void awaitEvents() {
+        final long expected = (long) expectedEventsPerSubscription * subscriptions;
+        final long deadline = System.nanoTime() + timeout.toNanos();
+
+        while (true) {
+            final long now = System.nanoTime();
+            if (receivedEvents.sum() >= expected
+                || now - lastActivityNanos.get() > idleTimeout.toNanos()
+                || now - deadline > 0) {
+                return;
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+    }
+
+    private SubscriptionLoadReport createReport(final long start) {
+        final long expected = (long) expectedEventsPerSubscription * subscriptions;
+        final long received = receivedEvents.sum();
+        final long end = lastReceivedNanos.get();
+        final double durationMillis = end == Long.MIN_VALUE ? 0 : (end - start) / 1_000_000.0;
+
+        return new SubscriptionLoadReport(subscriptions,
+                connections,
+                expected,
+                received,
+                Math.max(0, expected - received),
+                slowConnections,
+                errors.sum(),
+                durationMillis,
+                durationMillis > 0 ? received / (durationMillis / 1000) : 0,
+                latency.toLatency(),
+                List.copyOf(errorSamples));
+    }
+
+    private void recordError(final String message) {
+        errors.increment();
+        if (errorSamples.size() < MAX_ERROR_SAMPLES) {
+            errorSamples.add(message);
+        }
+    }
+
+    private static Instant parseTimestamp(final Object timestamp) {
+        if (timestamp instanceof Number epochMillis) {
+            return Instant.ofEpochMilli(epochMillis.longValue());
+        }
+        try {
+            return OffsetDateTime.parse(timestamp.toString()).toInstant();
+        } catch (final DateTimeParseException e) {
+            return Instant.parse(timestamp.toString());
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.extension.ExtensionContext;
 import org.junit.jupiter.api.extension.ParameterContext;
 import org.junit.jupiter.api.extension.ParameterResolutionException;
 import org.junit.jupiter.api.extension.ParameterResolver;
+import org.junit.platform.commons.support.AnnotationSupport;
 import org.springframework.graphql.test.tester.GraphQlTester;
 import org.springframework.graphql.test.tester.HttpGraphQlTester;
 import org.springframework.graphql.test.tester.WebGraphQlTester;
@@ -14,10 +15,12 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.test.web.servlet.client.MockMvcWebTestClient;
 import org.springframework.web.context.WebApplicationContext;
-import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
 import org.springframework.web.reactive.socket.client.WebSocketClient;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -38,7 +41,7 @@ import java.util.UUID;
  *        // ...
  * </pre>
  * <p>
- * If the test class has a field annotated with {@link InjectCurrentUserHeader},
+ * If the test class or one of its superclasses has a field annotated with {@link InjectCurrentUserHeader},
  * the user header will be automatically added to the tester.
  * The field must be of type {@link UUID} or {@link LoggedInUser}.
  * <pre>
@@ -50,10 +53,14 @@ import java.util.UUID;
  * This extension, by default, uses a {@link HttpGraphQlTester}, which can also be
  * explicitly requested by using a parameter of type {@link HttpGraphQlTester}.
  * To use a {@link WebSocketGraphQlTester}, the test method must have a parameter
- * of type {@link WebSocketGraphQlTester}.
+ * of type {@link WebSocketGraphQlTester}. All WebSocket testers use the {@link SharedWebSocketClient}.
+ * The session of a WebSocket tester is closed after the test, or, if the test class is annotated with
+ * {@link SharedWebSocketSession}, after all tests of the class.
  */
 public class GraphQlTesterParameterResolver implements ParameterResolver {
 
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(GraphQlTesterParameterResolver.class);
+
     @Override
     public boolean supportsParameter(final ParameterContext parameterContext,
                                      final ExtensionContext extensionContext) throws ParameterResolutionException {
@@ -68,8 +75,20 @@ public class GraphQlTesterParameterResolver implements ParameterResolver {
     @Override
     public Object resolveParameter(final ParameterContext parameterContext,
                                    final ExtensionContext extensionContext) throws ParameterResolutionException {
+        final long start = System.nanoTime();
+        try {
+            return createTester(parameterContext, extensionContext);
+        } finally {
+            TestPhaseTimer.addTime(extensionContext, TestPhase.TESTER_CREATION, System.nanoTime() - start);
+        }
+    }
 
+    private Object createTester(final ParameterContext parameterContext, final ExtensionContext extensionContext) {
         if (parameterContext.getParameter().getType().equals(WebSocketGraphQlTester.class)) {
+            if (TransactionalRollback.isActive(extensionContext)) {
+                throw new ParameterResolutionException("WebSocketGraphQlTester cannot be used with transactional "
+                                                       + "rollback, as its requests are handled on other threads");
+            }
             return createWebSocketGraphQlTester(extensionContext);
         } else {
             return createHttpGraphQlTester(extensionContext);
@@ -77,31 +96,73 @@ public class GraphQlTesterParameterResolver implements ParameterResolver {
     }
 
     private HttpGraphQlTester createHttpGraphQlTester(final ExtensionContext extensionContext) {
+        return (HttpGraphQlTester) injectCurrentUserHeaderIfNecessary(getBaseHttpGraphQlTester(extensionContext),
+                extensionContext);
+    }
+
+    /**
+     * Returns the MockMvc based tester of the application context of the test, without a current user header,
+     * see {@link #injectCurrentUserHeaderIfNecessary(WebGraphQlTester, ExtensionContext)}.
+     *
+     * @param extensionContext the extension context of the test
+     * @return the tester
+     */
+    static HttpGraphQlTester getBaseHttpGraphQlTester(final ExtensionContext extensionContext) {
         final WebApplicationContext context = (WebApplicationContext) SpringExtension.getApplicationContext(extensionContext);
 
+        // building the MockMvc based client is expensive, so it is done once per test class and application context;
+        // it is not kept for the whole run, so that contexts evicted from Spring's context cache can be collected
+        return getClassContext(extensionContext).getStore(NAMESPACE)
+                .getOrComputeIfAbsent(context, GraphQlTesterParameterResolver::createBaseHttpGraphQlTester,
+                        HttpGraphQlTester.class);
+    }
+
+    private static HttpGraphQlTester createBaseHttpGraphQlTester(final WebApplicationContext context) {
         final WebTestClient webTestClient = MockMvcWebTestClient.bindToApplicationContext(context)
                 .configureClient()
                 .baseUrl(getHttpGraphQlRoute())
                 .build();
 
-        HttpGraphQlTester tester = HttpGraphQlTester.create(webTestClient);
-
-        return (HttpGraphQlTester) injectCurrentUserHeaderIfNecessary(tester, extensionContext);
+        return HttpGraphQlTester.create(webTestClient);
     }
 
     private WebSocketGraphQlTester createWebSocketGraphQlTester(final ExtensionContext extensionContext) {
+        if (AnnotationSupport.isAnnotated(extensionContext.getTestClass(), SharedWebSocketSession.class)) {
+            // the session is closed when the store of the test class is closed
+            return getClassContext(extensionContext).getStore(NAMESPACE)
+                    .getOrComputeIfAbsent(SharedWebSocketSession.class,
+                            key -> new WebSocketSession(newWebSocketGraphQlTester(extensionContext)),
+                            WebSocketSession.class)
+                    .tester();
+        }
+
+        final WebSocketGraphQlTester tester = newWebSocketGraphQlTester(extensionContext);
+        // the session is closed when the store of the test method is closed
+        extensionContext.getStore(NAMESPACE).put(new Object(), new WebSocketSession(tester));
+        return tester;
+    }
+
+    private WebSocketGraphQlTester newWebSocketGraphQlTester(final ExtensionContext extensionContext) {
         final String url = "ws://localhost:" + getPort() + getWebSocketGraphQlRoute();
-        WebSocketClient client = new ReactorNettyWebSocketClient();
+        WebSocketClient client = SharedWebSocketClient.get(extensionContext);
         WebSocketGraphQlTester tester = WebSocketGraphQlTester.builder(url, client).build();
 
         return (WebSocketGraphQlTester) injectCurrentUserHeaderIfNecessary(tester, extensionContext);
     }
 
+    private static ExtensionContext getClassContext(final ExtensionContext extensionContext) {
+        ExtensionContext context = extensionContext;
+        while (context.getTestMethod().isPresent() && context.getParent().isPresent()) {
+            context = context.getParent().get();
+        }
+        return context;
+    }
+
     private String getPort() {
         return System.getProperty("server.port");
     }
 
-    private String getHttpGraphQlRoute() {
+    static String getHttpGraphQlRoute() {
         return System.getProperty("spring.graphql.path", "/graphql");
     }
 
@@ -109,39 +170,98 @@ public class GraphQlTesterParameterResolver implements ParameterResolver {
         return System.getProperty("spring.graphql.websocket.path", "/graphql-ws");
     }
 
-    @SneakyThrows
-    @SuppressWarnings("java:S3011")
-    private WebGraphQlTester injectCurrentUserHeaderIfNecessary(final WebGraphQlTester tester,
-                                                                final ExtensionContext extensionContext) {
+    /**
+     * Adds the header of the {@link InjectCurrentUserHeader} field of the test class to the tester, if there is one.
+     *
+     * @param tester           the tester
+     * @param extensionContext the extension context of the test
+     * @return a tester with the header, or the given tester if the test class has no such field
+     */
+    static WebGraphQlTester injectCurrentUserHeaderIfNecessary(final WebGraphQlTester tester,
+                                                               final ExtensionContext extensionContext) {
+        final Optional<Object> currentUser = getCurrentUser(extensionContext);
+
+        if (currentUser.isEmpty()) {
+            return tester;
+        }
+        if (currentUser.get() instanceof UUID userId) {
+            return HeaderUtils.addCurrentUserHeader(tester, userId);
+        }
+        return HeaderUtils.addCurrentUserHeader(tester, (LoggedInUser) currentUser.get());
+    }
 
+    /**
+     * Returns the value of the field of the test instance annotated with {@link InjectCurrentUserHeader}.
+     *
+     * @param extensionContext the extension context of the test
+     * @return the {@link UUID} or {@link LoggedInUser} of the field, or empty if the test class has no such field
+     */
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    static Optional<Object> getCurrentUser(final ExtensionContext extensionContext) {
         final Optional<Class<?>> testClass = extensionContext.getTestClass();
 
         if (testClass.isEmpty()) {
-            return tester;
+            return Optional.empty();
         }
 
-        // check if test class has a field annotated with InjectCurrentUserHeader
-        for (final Field field : testClass.get().getDeclaredFields()) {
-            if (!field.isAnnotationPresent(InjectCurrentUserHeader.class)) {
-                continue;
-            }
+        final Optional<CurrentUserField> currentUserField = extensionContext.getRoot().getStore(NAMESPACE)
+                .getOrComputeIfAbsent(new CurrentUserFieldKey(testClass.get()),
+                        key -> findCurrentUserField(key.testClass()),
+                        Optional.class);
 
-            final Class<?> fieldType = field.getType();
+        if (currentUserField.isEmpty()) {
+            return Optional.empty();
+        }
 
-            field.setAccessible(true); // make private fields accessible
+        return Optional.ofNullable(currentUserField.get().getter().invoke(extensionContext.getRequiredTestInstance()));
+    }
 
-            if (UUID.class.equals(fieldType)) {
-                UUID userId = (UUID) field.get(extensionContext.getTestInstance().orElseThrow());
-                return HeaderUtils.addCurrentUserHeader(tester, userId);
-            }
-            if (LoggedInUser.class.equals(fieldType)) {
-                LoggedInUser user = (LoggedInUser) field.get(extensionContext.getTestInstance().orElseThrow());
-                return HeaderUtils.addCurrentUserHeader(tester, user);
+    /**
+     * Searches the test class and its superclasses for a field annotated with {@link InjectCurrentUserHeader}.
+     */
+    @SuppressWarnings("java:S3011")
+    private static Optional<CurrentUserField> findCurrentUserField(final Class<?> testClass) {
+        for (Class<?> clazz = testClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (final Field field : clazz.getDeclaredFields()) {
+                if (!field.isAnnotationPresent(InjectCurrentUserHeader.class)) {
+                    continue;
+                }
+
+                final Class<?> fieldType = field.getType();
+                if (!UUID.class.equals(fieldType) && !LoggedInUser.class.equals(fieldType)) {
+                    throw new ParameterResolutionException("Field annotated with InjectCurrentUserHeader must be of type UUID or LoggedInUser");
+                }
+
+                try {
+                    // private lookup to access private fields
+                    MethodHandle getter = MethodHandles.privateLookupIn(clazz, MethodHandles.lookup())
+                            .unreflectGetter(field);
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        // static getters take no arguments, accept and ignore the test instance
+                        getter = MethodHandles.dropArguments(getter, 0, Object.class);
+                    }
+                    return Optional.of(new CurrentUserField(getter));
+                } catch (final IllegalAccessException e) {
+                    throw new ParameterResolutionException("Cannot access field " + field.getName(), e);
+                }
             }
-            throw new ParameterResolutionException("Field annotated with InjectCurrentUserHeader must be of type UUID or LoggedInUser");
         }
+        return Optional.empty();
+    }
 
-        return tester;
+    private record WebSocketSession(WebSocketGraphQlTester tester) implements ExtensionContext.Store.CloseableResource {
+        @Override
+        public void close() {
+            tester.stop().block();
+        }
+    }
+
+    private record CurrentUserField(MethodHandle getter) {
+    }
+
+    // wraps the test class so that the store entry does not collide with other entries keyed by class
+    private record CurrentUserFieldKey(Class<?> testClass) {
     }
 
 }
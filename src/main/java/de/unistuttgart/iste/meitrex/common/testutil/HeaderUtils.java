@@ -1,15 +1,20 @@
 package de.unistuttgart.iste.meitrex.common.testutil;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import org.springframework.graphql.test.tester.HttpGraphQlTester;
 import org.springframework.graphql.test.tester.WebGraphQlTester;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
 import java.util.Collections;
-import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Utility class for adding the current user header to a {@link HttpGraphQlTester}.
@@ -17,6 +22,15 @@ import java.util.UUID;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class HeaderUtils {
 
+    /**
+     * Name of the header that contains the json representation of the current user.
+     */
+    public static final String CURRENT_USER_HEADER = "CurrentUser";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final ThreadLocal<StringWriter> REUSABLE_BUFFER = ThreadLocal.withInitial(StringWriter::new);
+
     /**
      * Adds the current user header to the tester. This user will be used for all requests.
      *
@@ -26,7 +40,7 @@ public class HeaderUtils {
      */
     public static WebGraphQlTester addCurrentUserHeader(final WebGraphQlTester tester, final LoggedInUser user) {
         return tester.mutate()
-                .header("CurrentUser", getJson(user))
+                .header(CURRENT_USER_HEADER, getCurrentUserHeaderValue(user))
                 .build();
     }
 
@@ -54,67 +68,81 @@ public class HeaderUtils {
     }
 
     /**
-     * Converts the given user to a json string.
+     * Returns the value of the current user header for the given user.
+     * The value is not cached, as users may be modified between calls, but the output buffer is reused.
      *
      * @param user the user
-     * @return the json string
-     * @implNote We cannot use the {@link ObjectMapper} here because it cannot correctly convert the OffsetDateTime
+     * @return the json representation of the user
      */
-    private static String getJson(final LoggedInUser user) {
-
-        final StringBuilder courseMemberships = new StringBuilder().append("[");
-        final StringBuilder realmRoles = new StringBuilder().append("[");
-
-        for (int i = 0; i < user.getCourseMemberships().size(); i++) {
-            final LoggedInUser.CourseMembership courseMembership = user.getCourseMemberships().get(i);
+    public static String getCurrentUserHeaderValue(final LoggedInUser user) {
+        // one buffer per thread, so that the method may be called concurrently
+        final StringWriter buffer = REUSABLE_BUFFER.get();
+        buffer.getBuffer().setLength(0);
+        return getJson(user, buffer);
+    }
 
-            courseMemberships.append("{")
-                    .append("\"courseId\": \"").append(courseMembership.getCourseId()).append("\",")
-                    .append("\"role\": \"").append(courseMembership.getRole()).append("\",")
-                    .append("\"published\": ").append(courseMembership.isPublished()).append(",")
-                    .append("\"startDate\": \"").append(courseMembership.getStartDate()).append("\",")
-                    .append("\"endDate\": \"").append(courseMembership.getEndDate()).append("\"")
-                    .append("}");
+    /**
+     * Lazily converts the given users to current user header values, e.g., to generate the headers of many
+     * different users in load tests. The output buffer is reused, so the only allocation per user is the
+     * resulting string.
+     *
+     * @param users the users
+     * @return the header values, in the order of the users
+     */
+    public static Stream<String> getCurrentUserHeaderValues(final Stream<LoggedInUser> users) {
+        return users.map(HeaderUtils::getCurrentUserHeaderValue);
+    }
 
-            if (i < user.getCourseMemberships().size() - 1) {
-                courseMemberships.append(",");
+    /**
+     * Converts the given user to a json string.
+     *
+     * @param user   the user
+     * @param buffer the buffer to write to, must be empty
+     * @return the json string
+     * @implNote Dates are written with {@link OffsetDateTime#toString()}, which is the format the user handling
+     * of the services expects.
+     */
+    private static String getJson(final LoggedInUser user, final StringWriter buffer) {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(buffer)) {
+            generator.writeStartObject();
+            writeStringField(generator, "id", user.getId());
+            writeStringField(generator, "userName", user.getUserName());
+            writeStringField(generator, "firstName", user.getFirstName());
+            writeStringField(generator, "lastName", user.getLastName());
+            writeStringField(generator, "nickname", user.getNickname());
+
+            generator.writeArrayFieldStart("courseMemberships");
+            for (final LoggedInUser.CourseMembership courseMembership : user.getCourseMemberships()) {
+                generator.writeStartObject();
+                writeStringField(generator, "courseId", courseMembership.getCourseId());
+                writeStringField(generator, "role", courseMembership.getRole());
+                generator.writeBooleanField("published", courseMembership.isPublished());
+                writeStringField(generator, "startDate", courseMembership.getStartDate());
+                writeStringField(generator, "endDate", courseMembership.getEndDate());
+                generator.writeEndObject();
             }
-        }
+            generator.writeEndArray();
 
-        courseMemberships.append("]");
-
-        List<String> roleStrings = LoggedInUser.RealmRole.getRoleStringsFromEnum(user.getRealmRoles()).stream().toList();
-
-        for (int j = 0; j < roleStrings.size(); j++) {
-
-            realmRoles.append("\"")
-                    .append(roleStrings.get(j))
-                    .append("\"");
-
-            if (j < roleStrings.size() - 1) {
-                realmRoles.append(",");
+            generator.writeArrayFieldStart("realmRoles");
+            for (final String realmRole : LoggedInUser.RealmRole.getRoleStringsFromEnum(user.getRealmRoles())) {
+                generator.writeString(realmRole);
             }
+            generator.writeEndArray();
+
+            generator.writeEndObject();
+        } catch (final IOException e) {
+            // cannot happen when writing to a StringWriter
+            throw new UncheckedIOException(e);
         }
+        return buffer.toString();
+    }
 
-        realmRoles.append("]");
-
-        return """
-                {
-                  "id": "%s",
-                  "userName": "%s",
-                  "firstName": "%s",
-                  "lastName": "%s",
-                  "nickname": "%s",
-                  "courseMemberships": %s,
-                  "realmRoles": %s
-                }
-                """
-                .formatted(user.getId(),
-                        user.getUserName(),
-                        user.getFirstName(),
-                        user.getLastName(),
-                        user.getNickname(),
-                        courseMemberships.toString(),
-                        realmRoles.toString());
+    private static void writeStringField(final JsonGenerator generator, final String name, final Object value)
+            throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeStringField(name, value.toString());
+        }
     }
 }
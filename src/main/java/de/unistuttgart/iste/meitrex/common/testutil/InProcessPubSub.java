@@ -0,0 +1,472 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * In-process stand-in for the Dapr pub/sub broker. It delivers the events recorded by a {@link TopicEventRecorder}
+ * to the subscription endpoints of the application through MockMvc, as Dapr would deliver them to the sidecar's
+ * application, i.e., as a POST request with a CloudEvent JSON body.
+ * <p>
+ * Events are routed by their topic, i.e., the name of the {@link de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher}
+ * method that published them, to one or more endpoint paths. Events of topics without route are only counted.
+ * <p>
+ * Events are put into a bounded queue and delivered by a fixed number of worker threads. By default, each worker
+ * takes one event at a time and delivers it in its own request, as Dapr delivers events to a subscription endpoint.
+ * <p>
+ * Routes added as bulk routes receive batches instead, in the format of Dapr's bulk subscriptions, i.e., one request
+ * with a {@code BulkSubscribeMessage} body per batch, answered with the status of each entry. A worker drains up to
+ * {@code batchSize} events from the queue at once, and waits up to {@code batchTimeout} for more events if the
+ * batch is not full. Events of the batch are delivered in one request per bulk route and topic, and one request per
+ * event for other routes. The batch timeout defaults to zero, so that events are not delayed if the queue is empty.
+ * <p>
+ * If the queue is full, publishers either wait for free space
+ * ({@link Backpressure#BLOCK}), which slows the publishing service down like a saturated broker would, or the event
+ * is dropped ({@link Backpressure#DROP}).
+ * <p>
+ * Worker threads never wait for free space: an endpoint that publishes a follow-up event while the queue is full
+ * would otherwise block its worker, and once all workers are blocked, no event is delivered anymore. Such a
+ * publication fails with an {@link IllegalStateException} instead, so that the delivery fails and is logged.
+ * Publishers on other threads also fail if the queue has not had space for {@code blockTimeout}.
+ * <p>
+ * As events are delivered on other threads, their effects are not isolated by {@link TransactionalRollback}.
+ * Use {@link #awaitIdle(Duration)} before asserting on the effects of events.
+ */
+@Slf4j
+public class InProcessPubSub implements AutoCloseable {
+
+    /**
+     * The name of the pub/sub component in the delivered CloudEvents.
+     */
+    public static final String PUBSUB_NAME = "meitrex";
+
+    /**
+     * What happens to an event if the queue is full.
+     */
+    public enum Backpressure {
+        /**
+         * The publishing thread waits until the queue has space, except on worker threads, see above.
+         */
+        BLOCK,
+        /**
+         * The event is dropped and counted in {@link Stats#dropped()}.
+         */
+        DROP
+    }
+
+    /**
+     * Counters of the broker since it was created or last reset.
+     *
+     * @param published the number of events published to a topic with a route
+     * @param delivered the number of successful deliveries, i.e., responses with a 2xx status
+     * @param failed    the number of failed deliveries
+     * @param dropped   the number of events dropped because the queue was full
+     * @param unrouted  the number of events published to a topic without route
+     * @param latency   the time from publishing an event to the end of a successful delivery, in milliseconds
+     */
+    public record Stats(long published, long delivered, long failed, long dropped, long unrouted,
+                        LoadTestReport.Latency latency) {
+    }
+
+    private static final int MAX_LOGGED_FAILURES = 10;
+
+    private final WebApplicationContext applicationContext;
+    private final ObjectMapper objectMapper;
+    private final Map<String, List<Route>> routes = new ConcurrentHashMap<>();
+    private final Map<String, Function<Object, Object>> payloadConverters = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final Duration batchTimeout;
+    private final Duration blockTimeout;
+    private final Backpressure backpressure;
+    private final BlockingQueue<Delivery> queue;
+    private final ExecutorService workers;
+    private final ThreadLocal<Boolean> workerThread = ThreadLocal.withInitial(() -> false);
+
+    private volatile MockMvc mockMvc;
+    private volatile boolean closed = false;
+    private final AtomicLong pending = new AtomicLong();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder unrouted = new LongAdder();
+    private volatile LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @param applicationContext the application context with the subscription endpoints
+     * @param objectMapper       the mapper for the CloudEvent bodies, defaults to a mapper with all modules found
+     * @param routes             the endpoint paths of each topic
+     * @param bulkRoutes         the endpoint paths of each topic that receive batches in Dapr's bulk format
+     * @param threads            the number of worker threads, defaults to 4
+     * @param queueCapacity      the maximum number of queued events, defaults to 10000
+     * @param batchSize          the maximum number of events a worker takes from the queue at once, defaults to 1
+     * @param batchTimeout       how long a worker waits for a batch to fill, defaults to zero
+     * @param backpressure       what happens if the queue is full, defaults to {@link Backpressure#BLOCK}
+     * @param blockTimeout       how long publishers wait for space with {@link Backpressure#BLOCK}, defaults to 30 s
+     */
+    @Builder
+    private InProcessPubSub(final WebApplicationContext applicationContext,
+                            final ObjectMapper objectMapper,
+                            final Map<String, List<String>> routes,
+                            final Map<String, List<String>> bulkRoutes,
+                            final Integer threads,
+                            final Integer queueCapacity,
+                            final Integer batchSize,
+                            final Duration batchTimeout,
+                            final Backpressure backpressure,
+                            final Duration blockTimeout) {
+        this.applicationContext = Objects.requireNonNull(applicationContext, "applicationContext must be set");
+        this.objectMapper = Objects.requireNonNullElseGet(objectMapper, () -> new ObjectMapper().findAndRegisterModules());
+        if (routes != null) {
+            routes.forEach((topic, paths) -> paths.forEach(path -> addRoute(topic, new Route(path, false))));
+        }
+        if (bulkRoutes != null) {
+            bulkRoutes.forEach((topic, paths) -> paths.forEach(path -> addRoute(topic, new Route(path, true))));
+        }
+        this.batchSize = Objects.requireNonNullElse(batchSize, 1);
+        if (this.batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.batchTimeout = Objects.requireNonNullElse(batchTimeout, Duration.ZERO);
+        this.backpressure = Objects.requireNonNullElse(backpressure, Backpressure.BLOCK);
+        this.blockTimeout = Objects.requireNonNullElse(blockTimeout, Duration.ofSeconds(30));
+        this.queue = new ArrayBlockingQueue<>(Objects.requireNonNullElse(queueCapacity, 10_000));
+
+        final int threadCount = Objects.requireNonNullElse(threads, 4);
+        this.workers = Executors.newFixedThreadPool(threadCount, Thread.ofPlatform().name("meitrex-pubsub-", 0).daemon().factory());
+        for (int i = 0; i < threadCount; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Adds an endpoint the events of a topic are delivered to.
+     *
+     * @param topic the topic, i.e., the name of the publisher method
+     * @param path  the path of the subscription endpoint, e.g., "/content-progressed"
+     */
+    public void addRoute(final String topic, final String path) {
+        addRoute(topic, new Route(path, false));
+    }
+
+    /**
+     * Adds an endpoint the events of a topic are delivered to in batches, in the format of Dapr's bulk subscriptions.
+     *
+     * @param topic the topic, i.e., the name of the publisher method
+     * @param path  the path of the bulk subscription endpoint
+     */
+    public void addBulkRoute(final String topic, final String path) {
+        addRoute(topic, new Route(path, true));
+    }
+
+    private void addRoute(final String topic, final Route route) {
+        routes.merge(topic, List.of(route), (existing, added) -> {
+            final List<Route> merged = new ArrayList<>(existing);
+            merged.addAll(added);
+            return List.copyOf(merged);
+        });
+    }
+
+    /**
+     * Sets a function that converts the payload of a topic before it is delivered, e.g., to send only some
+     * of its fields.
+     *
+     * @param topic     the topic
+     * @param converter the converter
+     */
+    public void setPayloadConverter(final String topic, final Function<Object, Object> converter) {
+        payloadConverters.put(topic, converter);
+    }
+
+    /**
+     * Queues an event for delivery to the routes of its topic.
+     *
+     * @param event the event
+     * @throws IllegalStateException if the queue is full with {@link Backpressure#BLOCK} and the event cannot be
+     *                               queued without waiting, see above
+     */
+    public void publish(final RecordedEvent event) {
+        final List<Route> eventRoutes = routes.get(event.topic());
+        if (eventRoutes == null || eventRoutes.isEmpty()) {
+            unrouted.increment();
+            return;
+        }
+        published.increment();
+
+        for (final Route route : eventRoutes) {
+            final Delivery delivery = new Delivery(event, route, System.nanoTime());
+            pending.incrementAndGet();
+            boolean queued = false;
+            try {
+                queued = enqueue(delivery);
+            } finally {
+                if (!queued) {
+                    pending.decrementAndGet();
+                    dropped.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until all queued events have been delivered.
+     *
+     * @param timeout the maximum time to wait
+     * @throws AssertionError if the events have not been delivered in time
+     */
+    public void awaitIdle(final Duration timeout) {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        while (pending.get() > 0) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new AssertionError("%d event deliveries still pending after %s".formatted(pending.get(), timeout));
+            }
+            LockSupport.parkNanos(Duration.ofMillis(1).toNanos());
+        }
+    }
+
+    /**
+     * @return the counters of the broker
+     */
+    public Stats getStats() {
+        return new Stats(published.sum(), delivered.sum(), failed.sum(), dropped.sum(), unrouted.sum(),
+                latency.toLatency());
+    }
+
+    /**
+     * Resets all counters. Queued events are still delivered.
+     */
+    public void resetStats() {
+        published.reset();
+        delivered.reset();
+        failed.reset();
+        dropped.reset();
+        unrouted.reset();
+        latency = new LatencyHistogram();
+    }
+
+    /**
+     * Stops the workers. Events that have not been delivered yet are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.shutdownNow();
+    }
+
+    private boolean enqueue(final Delivery delivery) {
+        if (backpressure == Backpressure.DROP) {
+            return queue.offer(delivery);
+        }
+        if (workerThread.get()) {
+            if (!queue.offer(delivery)) {
+                throw new IllegalStateException(("The queue is full, so the %s event published while delivering "
+                                                 + "another event cannot be queued without risking a deadlock. "
+                                                 + "Increase the queue capacity or use Backpressure.DROP.")
+                        .formatted(delivery.event().topic()));
+            }
+            return true;
+        }
+        try {
+            if (!queue.offer(delivery, blockTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new IllegalStateException("The queue has been full for %s, the %s event cannot be queued"
+                        .formatted(blockTimeout, delivery.event().topic()));
+            }
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void work() {
+        workerThread.set(true);
+        final List<Delivery> batch = new ArrayList<>(batchSize);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+                fillBatch(batch);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.addAndGet(-batch.size());
+                return;
+            }
+            try {
+                deliver(batch);
+            } finally {
+                pending.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void fillBatch(final List<Delivery> batch) throws InterruptedException {
+        queue.drainTo(batch, batchSize - batch.size());
+        if (batch.size() == batchSize || batchTimeout.isZero()) {
+            return;
+        }
+        final long deadline = System.nanoTime() + batchTimeout.toNanos();
+        while (batch.size() < batchSize) {
+            final Delivery next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void deliver(final List<Delivery> batch) {
+        final Map<List<String>, List<Delivery>> bulkRequests = new LinkedHashMap<>();
+        for (final Delivery delivery : batch) {
+            if (delivery.route().bulk()) {
+                bulkRequests.computeIfAbsent(List.of(delivery.route().path(), delivery.event().topic()),
+                        key -> new ArrayList<>()).add(delivery);
+            } else {
+                deliver(delivery);
+            }
+        }
+        bulkRequests.values().forEach(this::deliverBulk);
+    }
+
+    private void deliver(final Delivery delivery) {
+        try {
+            final MvcResult result = getMockMvc().perform(post(delivery.route().path())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsBytes(toCloudEvent(delivery.event()))))
+                    .andReturn();
+
+            final int status = result.getResponse().getStatus();
+            if (status >= 200 && status < 300) {
+                recordSuccess(delivery);
+            } else {
+                logFailure(delivery, "status " + status + ": " + result.getResponse().getContentAsString());
+            }
+        } catch (final Exception e) {
+            logFailure(delivery, e.toString());
+        }
+    }
+
+    /**
+     * Delivers events of the same topic to a bulk route. Entries the endpoint does not report as
+     * {@code SUCCESS} count as failed, as Dapr would retry or drop them.
+     */
+    private void deliverBulk(final List<Delivery> deliveries) {
+        final String topic = deliveries.getFirst().event().topic();
+        try {
+            final Map<String, Delivery> entryIds = new LinkedHashMap<>();
+            final List<Map<String, Object>> entries = new ArrayList<>();
+            for (final Delivery delivery : deliveries) {
+                final String entryId = UUID.randomUUID().toString();
+                entryIds.put(entryId, delivery);
+                entries.add(Map.of(
+                        "entryId", entryId,
+                        "event", toCloudEvent(delivery.event()),
+                        "contentType", "application/cloudevents+json",
+                        "metadata", Map.of()));
+            }
+            final Map<String, Object> message = new LinkedHashMap<>();
+            message.put("id", UUID.randomUUID().toString());
+            message.put("entries", entries);
+            message.put("metadata", Map.of());
+            message.put("topic", topic);
+            message.put("pubsubname", PUBSUB_NAME);
+            message.put("type", "com.dapr.event.sent.bulk");
+
+            final MvcResult result = getMockMvc().perform(post(deliveries.getFirst().route().path())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsBytes(message)))
+                    .andReturn();
+
+            final int status = result.getResponse().getStatus();
+            if (status < 200 || status >= 300) {
+                final String reason = "status " + status + ": " + result.getResponse().getContentAsString();
+                deliveries.forEach(delivery -> logFailure(delivery, reason));
+                return;
+            }
+            final String body = result.getResponse().getContentAsString();
+            final JsonNode statuses = body.isBlank() ? null : objectMapper.readTree(body).get("statuses");
+            if (statuses == null || !statuses.isArray()) {
+                deliveries.forEach(this::recordSuccess);
+                return;
+            }
+            for (final JsonNode entryStatus : statuses) {
+                final Delivery delivery = entryIds.remove(entryStatus.path("entryId").asText());
+                if (delivery == null) {
+                    continue;
+                }
+                if ("SUCCESS".equals(entryStatus.path("status").asText())) {
+                    recordSuccess(delivery);
+                } else {
+                    logFailure(delivery, "entry status " + entryStatus.path("status").asText());
+                }
+            }
+            entryIds.values().forEach(delivery -> logFailure(delivery, "no entry status in the bulk response"));
+        } catch (final Exception e) {
+            deliveries.forEach(delivery -> logFailure(delivery, e.toString()));
+        }
+    }
+
+    private void recordSuccess(final Delivery delivery) {
+        delivered.increment();
+        latency.record(System.nanoTime() - delivery.publishedNanos());
+    }
+
+    private void logFailure(final Delivery delivery, final String reason) {
+        failed.increment();
+        if (failed.sum() <= MAX_LOGGED_FAILURES) {
+            log.warn("Delivery of {} event to {} failed with {}", delivery.event().topic(), delivery.route().path(),
+                    reason);
+        }
+    }
+
+    private Map<String, Object> toCloudEvent(final RecordedEvent event) {
+        final Object payload = payloadConverters.getOrDefault(event.topic(), Function.identity()).apply(event.payload());
+
+        final Map<String, Object> cloudEvent = new LinkedHashMap<>();
+        cloudEvent.put("id", UUID.randomUUID().toString());
+        cloudEvent.put("source", "meitrex-test");
+        cloudEvent.put("type", "com.dapr.event.sent");
+        cloudEvent.put("specversion", "1.0");
+        cloudEvent.put("datacontenttype", "application/json");
+        cloudEvent.put("time", event.timestamp().toString());
+        cloudEvent.put("topic", event.topic());
+        cloudEvent.put("pubsubname", PUBSUB_NAME);
+        cloudEvent.put("data", payload);
+        return cloudEvent;
+    }
+
+    private MockMvc getMockMvc() {
+        // created on first use, as the context is not fully initialized when this broker is created
+        if (mockMvc == null) {
+            synchronized (this) {
+                if (mockMvc == null) {
+                    mockMvc = MockMvcBuilders.webAppContextSetup(applicationContext).build();
+                }
+            }
+        }
+        return mockMvc;
+    }
+
+    private record Route(String path, boolean bulk) {
+    }
+
+    private record Delivery(RecordedEvent event, Route route, long publishedNanos) {
+    }
+}
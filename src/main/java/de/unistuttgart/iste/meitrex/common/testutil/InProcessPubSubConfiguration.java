@@ -0,0 +1,83 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This test configuration delivers the events published through the {@link de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher}
+ * to the subscription endpoints of the service under test, using an {@link InProcessPubSub}.
+ * It includes {@link RecordingTopicPublisherConfiguration}, so the events are recorded as well.
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     &#64;Import(InProcessPubSubConfiguration.class)
+ *     &#64;TestPropertySource(properties = "meitrex.pubsub.routes=notifyUserWorkedOnContent:/content-progressed")
+ *     public class Test {
+ *         &#64;Autowired
+ *         private InProcessPubSub pubSub;
+ *         // ...
+ *         pubSub.awaitIdle(Duration.ofSeconds(5));
+ * </pre>
+ * The property {@code meitrex.pubsub.routes} is a comma-separated list of routes {@code <topic>:<path>}, where the
+ * topic is the name of the publisher method. A topic can be routed to several paths.
+ * Routes are given as values rather than as property names, as property names are not case-sensitive.
+ * Endpoints that are bulk subscriptions are listed in {@code meitrex.pubsub.bulk-routes} in the same format, and
+ * receive batches of up to {@code meitrex.pubsub.batch-size} events, see {@link InProcessPubSub}.
+ * The broker can be tuned with the properties {@code meitrex.pubsub.threads}, {@code meitrex.pubsub.queue-capacity},
+ * {@code meitrex.pubsub.batch-size}, {@code meitrex.pubsub.batch-timeout}, {@code meitrex.pubsub.backpressure}
+ * ({@code BLOCK} or {@code DROP}) and {@code meitrex.pubsub.block-timeout}.
+ */
+@TestConfiguration
+@Import(RecordingTopicPublisherConfiguration.class)
+public class InProcessPubSubConfiguration {
+
+    private static final String PREFIX = "meitrex.pubsub.";
+
+    @Bean(destroyMethod = "close")
+    public InProcessPubSub inProcessPubSub(final WebApplicationContext applicationContext,
+                                           final TopicEventRecorder recorder,
+                                           final Environment environment) {
+        final Binder binder = Binder.get(environment);
+
+        final InProcessPubSub pubSub = InProcessPubSub.builder()
+                .applicationContext(applicationContext)
+                .routes(getRoutes(binder, PREFIX + "routes"))
+                .bulkRoutes(getRoutes(binder, PREFIX + "bulk-routes"))
+                .threads(binder.bind(PREFIX + "threads", Integer.class).orElse(null))
+                .queueCapacity(binder.bind(PREFIX + "queue-capacity", Integer.class).orElse(null))
+                .batchSize(binder.bind(PREFIX + "batch-size", Integer.class).orElse(null))
+                .batchTimeout(binder.bind(PREFIX + "batch-timeout", Duration.class).orElse(null))
+                .backpressure(binder.bind(PREFIX + "backpressure", InProcessPubSub.Backpressure.class).orElse(null))
+                .blockTimeout(binder.bind(PREFIX + "block-timeout", Duration.class).orElse(null))
+                .build();
+
+        recorder.addListener(pubSub::publish);
+        return pubSub;
+    }
+
+    private static Map<String, List<String>> getRoutes(final Binder binder, final String property) {
+        final List<String> routes = binder.bind(property, Bindable.listOf(String.class)).orElse(List.of());
+
+        final Map<String, List<String>> paths = new HashMap<>();
+        for (final String route : routes) {
+            final int separator = route.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid route '" + route + "', expected <topic>:<path>");
+            }
+            paths.computeIfAbsent(route.substring(0, separator).strip(), topic -> new ArrayList<>())
+                    .add(route.substring(separator + 1).strip());
+        }
+        return paths;
+    }
+}
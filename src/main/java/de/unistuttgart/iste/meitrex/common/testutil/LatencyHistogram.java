@@ -0,0 +1,114 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of latencies in nanoseconds with a fixed memory footprint.
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is split into 32 buckets, so percentiles
+ * are accurate to about 3%. Recording a value does not allocate and does not lock.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos the latency in nanoseconds, negative values are counted as 0
+     */
+    void record(final long nanos) {
+        final long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        min.accumulate(value);
+        max.accumulate(value);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket that contains the value at the given percentile, in nanoseconds,
+     * or 0 if no values have been recorded
+     */
+    long getValueAtPercentile(final double percentile) {
+        final long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return a summary of the recorded latencies in milliseconds
+     */
+    LoadTestReport.Latency toLatency() {
+        final long total = getCount();
+        return new LoadTestReport.Latency(
+                total == 0 ? 0 : min.get() / NANOS_PER_MILLI,
+                total == 0 ? 0 : sum.sum() / NANOS_PER_MILLI / total,
+                getValueAtPercentile(50) / NANOS_PER_MILLI,
+                getValueAtPercentile(90) / NANOS_PER_MILLI,
+                getValueAtPercentile(95) / NANOS_PER_MILLI,
+                getValueAtPercentile(99) / NANOS_PER_MILLI,
+                getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                max.get() / NANOS_PER_MILLI);
+    }
+
+    /**
+     * @return the non-empty buckets in ascending order, with their upper bounds in milliseconds
+     */
+    List<LoadTestReport.Bucket> toBuckets() {
+        final List<LoadTestReport.Bucket> buckets = new ArrayList<>();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            final long bucketCount = counts.get(i);
+            if (bucketCount > 0) {
+                buckets.add(new LoadTestReport.Bucket(bucketUpperBound(i) / NANOS_PER_MILLI, bucketCount));
+            }
+        }
+        return buckets;
+    }
+
+    private static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    private static long bucketUpperBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long lowerBound = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,103 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Result of a load test run by {@link GraphQlLoadDriver}.
+ * The report can be written to and read from JSON, e.g., to compare the results of different commits.
+ *
+ * @param name                the name of the load test
+ * @param revision            the revision of the code under test, from the system property
+ *                            {@code meitrex.load-test.revision}, or null if not set
+ * @param timestamp           the start of the measured requests, in ISO-8601 format
+ * @param target              the target of the requests, i.e., "MockMvc" or the URL of the server
+ * @param concurrency         the number of concurrent clients
+ * @param requests            the number of measured requests, excluding warm-up requests
+ * @param failures            the number of failed requests, i.e., requests that threw or returned errors
+ * @param durationMillis      the time it took to send all measured requests
+ * @param throughputPerSecond the number of successful requests per second
+ * @param latency             the latency of successful requests
+ * @param histogram           the latency histogram of successful requests
+ * @param failureSamples      the messages of the first failures
+ */
+public record LoadTestReport(String name,
+                             String revision,
+                             String timestamp,
+                             String target,
+                             int concurrency,
+                             long requests,
+                             long failures,
+                             double durationMillis,
+                             double throughputPerSecond,
+                             Latency latency,
+                             List<Bucket> histogram,
+                             List<String> failureSamples) {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * Latency statistics in milliseconds.
+     */
+    public record Latency(double min, double mean, double p50, double p90, double p95, double p99, double p999,
+                          double max) {
+    }
+
+    /**
+     * A bucket of a latency histogram.
+     *
+     * @param upperBoundMillis the largest latency counted in this bucket, in milliseconds
+     * @param count            the number of requests in this bucket
+     */
+    public record Bucket(double upperBoundMillis, long count) {
+    }
+
+    /**
+     * @return the report as JSON
+     */
+    public String toJson() {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(this);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the report as JSON to the given file, creating parent directories if necessary.
+     *
+     * @param file the file
+     */
+    public void writeTo(final Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.writeString(file, toJson());
+    }
+
+    /**
+     * Reads a report written by {@link #writeTo(Path)}.
+     *
+     * @param file the file
+     * @return the report
+     */
+    public static LoadTestReport readFrom(final Path file) throws IOException {
+        return OBJECT_MAPPER.readValue(file.toFile(), LoadTestReport.class);
+    }
+
+    /**
+     * @return a one-line summary of the report for logging
+     */
+    public String summary() {
+        return "%s: %d requests (%d failed) with %d clients in %.0f ms, %.1f req/s, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms"
+                .formatted(name, requests, failures, concurrency, durationMillis, throughputPerSecond,
+                        latency.p50(), latency.p95(), latency.p99());
+    }
+}
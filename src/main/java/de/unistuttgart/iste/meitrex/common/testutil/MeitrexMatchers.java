@@ -1,7 +1,9 @@
 package de.unistuttgart.iste.meitrex.common.testutil;
 
+import org.hamcrest.Description;
 import org.hamcrest.FeatureMatcher;
 import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeDiagnosingMatcher;
 import org.springframework.graphql.ResponseError;
 
 import java.util.Collection;
@@ -9,6 +11,7 @@ import java.util.function.Function;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 /**
  * Collection of useful Hamcrest matchers.
@@ -92,4 +95,62 @@ public class MeitrexMatchers {
                 .map(matcherFunction)
                 .toArray(Matcher[]::new);
     }
+
+    /**
+     * Matcher for recorded GraphQL requests that checks if all values of a DataLoader were loaded in a single batch,
+     * e.g., that the chapters of all courses were loaded by one call of a {@code @BatchMapping} method.
+     * Requires {@link GraphQlInstrumentationConfiguration}.
+     *
+     * @param dataLoader the name of the DataLoader, for {@code @BatchMapping} methods the field coordinates,
+     *                   e.g., "Course.chapters"
+     * @return the matcher
+     */
+    public static Matcher<RecordedGraphQlExecution> resolvedInSingleBatch(String dataLoader) {
+        return resolvedInAtMostBatches(dataLoader, 1);
+    }
+
+    /**
+     * Like {@link #resolvedInSingleBatch(String)}, but allows up to the given number of batches, e.g., for fields
+     * on several levels of the response.
+     */
+    public static Matcher<RecordedGraphQlExecution> resolvedInAtMostBatches(String dataLoader, long maxBatches) {
+        return new TypeSafeDiagnosingMatcher<>() {
+            @Override
+            protected boolean matchesSafely(RecordedGraphQlExecution execution, Description mismatch) {
+                RecordedGraphQlExecution.DataLoaderStats stats = execution.dataLoaders().get(dataLoader);
+                if (stats == null) {
+                    mismatch.appendText("DataLoader was not used, used DataLoaders: ")
+                            .appendValue(execution.dataLoaders().keySet());
+                    return false;
+                }
+                if (stats.batchCount() < 1 || stats.batchCount() > maxBatches) {
+                    mismatch.appendText("loaded ").appendValue(stats.loadCount()).appendText(" values in ")
+                            .appendValue(stats.batchCount()).appendText(" batches with a mean size of ")
+                            .appendValue(stats.meanBatchSize());
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public void describeTo(Description description) {
+                description.appendText("DataLoader ").appendValue(dataLoader).appendText(" resolved in at most ")
+                        .appendValue(maxBatches).appendText(" batch(es)");
+            }
+        };
+    }
+
+    /**
+     * Matcher for recorded GraphQL requests that checks if a field was fetched at most the given number of times,
+     * e.g., to check that a field without DataLoader is not fetched for each element of a list.
+     * Requires {@link GraphQlInstrumentationConfiguration}.
+     *
+     * @param field    the coordinates of the field, e.g., "Course.chapters"
+     * @param maxCount the maximum number of fetches
+     * @return the matcher
+     */
+    public static Matcher<RecordedGraphQlExecution> fetchedAtMost(String field, long maxCount) {
+        return hasFeature("fetch count of " + field, execution -> execution.fetchCount(field),
+                lessThanOrEqualTo(maxCount));
+    }
 }
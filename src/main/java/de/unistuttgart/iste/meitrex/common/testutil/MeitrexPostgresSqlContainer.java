@@ -1,8 +1,21 @@
 package de.unistuttgart.iste.meitrex.common.testutil;
 
+import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class is a singleton that starts a postgresql container for testing.
@@ -27,31 +40,110 @@ import org.testcontainers.containers.PostgreSQLContainer;
  *            // ...
  *         }
  *      </pre>
+ * <p>
+ * The container can save the state of a database as a template database ({@link #createSnapshot(String, String)})
+ * and later replace the database with a copy of it ({@link #restoreSnapshot(String, String)}).
+ * This is used by {@link ClearDatabase} for the {@link DatabaseResetStrategy.Strategy#SNAPSHOT} strategy.
+ * <p>
+ * The container can be configured with the following system properties, e.g., in the {@code test} task
+ * of the {@code build.gradle}:
+ * <ul>
+ *     <li>{@code meitrex.postgres.image}: the docker image to use, defaults to {@code postgres:17}.</li>
+ *     <li>{@code meitrex.postgres.performance}: if {@code true}, the data directory is placed on a tmpfs and
+ *     durability features ({@code fsync}, {@code synchronous_commit}, {@code full_page_writes}) are turned off.
+ *     Data is lost when the container stops, which does not matter for tests.</li>
+ *     <li>{@code meitrex.postgres.shared-buffers} and {@code meitrex.postgres.max-connections}: settings
+ *     of the performance profile, default to {@code 256MB} and
+ *     {@code 200}.</li>
+ *     <li>{@code meitrex.postgres.reuse}: if {@code true}, the container is kept running after the tests and
+ *     reused by the next test run. This additionally requires {@code testcontainers.reuse.enable=true} in
+ *     {@code ~/.testcontainers.properties}. Data of aborted test runs may still be in a reused database.</li>
+ *     <li>{@code meitrex.postgres.auto-explain}: if {@code true}, the plans of all statements are logged with
+ *     {@code auto_explain}, including the actual row counts, so that tests can check them with
+ *     {@link QueryPlanCollector}. This slows down every statement a bit and requires PostgreSQL 15 or newer.</li>
+ * </ul>
+ * The time it took to start the container is logged and available with {@link #getStartupDuration()}.
+ * <p>
+ * To run tests in parallel, set the system property {@code meitrex.postgres.database-per-context} to {@code true}.
+ * Each Spring context of a {@link GraphQlApiTest} then gets its own database in this container,
+ * see {@link DatabasePerContextCustomizerFactory}.
  */
+@Slf4j
 public class MeitrexPostgresSqlContainer extends PostgreSQLContainer<MeitrexPostgresSqlContainer>
         implements BeforeAllCallback {
 
-    private static final String IMAGE_VERSION = "postgres:latest";
+    private static final String DEFAULT_IMAGE = "postgres:17";
+    private static final String DEFAULT_SHARED_BUFFERS = "256MB";
+    private static final String DEFAULT_MAX_CONNECTIONS = "200";
+    private static final String DATA_DIRECTORY = "/var/lib/postgresql/data";
+    private static final long SHARED_MEMORY_SIZE = 512L * 1024 * 1024;
+    private static final String MAINTENANCE_DATABASE = "postgres";
+    private static final String DATABASE_PREFIX = "meitrex_test_";
+
+    /**
+     * The file the plans logged by {@code auto_explain} are written to, relative to the data directory.
+     */
+    static final String PLAN_LOG_FILE = "log/meitrex-plans.json";
+
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
 
-    private static MeitrexPostgresSqlContainer container;
+    private Duration startupDuration = null;
 
     private MeitrexPostgresSqlContainer() {
-        super(IMAGE_VERSION);
+        super(DockerImageName.parse(System.getProperty("meitrex.postgres.image", DEFAULT_IMAGE))
+                .asCompatibleSubstituteFor("postgres"));
+
+        final Map<String, String> settings = new LinkedHashMap<>();
+        // already the default of the postgres test container
+        settings.put("fsync", "off");
+
+        if (Boolean.getBoolean("meitrex.postgres.performance")) {
+            settings.put("synchronous_commit", "off");
+            settings.put("full_page_writes", "off");
+            settings.put("shared_buffers", System.getProperty("meitrex.postgres.shared-buffers", DEFAULT_SHARED_BUFFERS));
+            settings.put("max_connections", System.getProperty("meitrex.postgres.max-connections", DEFAULT_MAX_CONNECTIONS));
+            withTmpFs(Map.of(DATA_DIRECTORY, "rw"));
+            withSharedMemorySize(SHARED_MEMORY_SIZE);
+        }
+
+        if (isAutoExplainEnabled()) {
+            settings.put("shared_preload_libraries", "auto_explain");
+            settings.put("auto_explain.log_min_duration", "0");
+            settings.put("auto_explain.log_format", "json");
+            // actual row counts without the overhead of timing each plan node
+            settings.put("auto_explain.log_analyze", "on");
+            settings.put("auto_explain.log_timing", "off");
+            // one JSON object per line in a file that can be read with pg_read_binary_file
+            settings.put("logging_collector", "on");
+            settings.put("log_destination", "jsonlog");
+            settings.put("log_directory", "log");
+            settings.put("log_filename", "meitrex-plans.log");
+            settings.put("log_rotation_age", "0");
+            settings.put("log_rotation_size", "0");
+        }
+
+        withCommand(toCommand(settings));
+        withReuse(Boolean.getBoolean("meitrex.postgres.reuse"));
     }
 
     public static MeitrexPostgresSqlContainer getInstance() {
-        if (container == null) {
-            container = new MeitrexPostgresSqlContainer();
-        }
-        return container;
+        return InstanceHolder.INSTANCE;
     }
 
     @Override
-    public void start() {
+    public synchronized void start() {
+        final boolean alreadyStarted = getContainerId() != null;
+        final long startTime = System.nanoTime();
+
         super.start();
-        System.setProperty("DB_URL", container.getJdbcUrl());
-        System.setProperty("DB_USERNAME", container.getUsername());
-        System.setProperty("DB_PASSWORD", container.getPassword());
+
+        if (!alreadyStarted) {
+            this.startupDuration = Duration.ofNanos(System.nanoTime() - startTime);
+            log.info("Started {} in {} ms", getDockerImageName(), startupDuration.toMillis());
+        }
+        System.setProperty("DB_URL", getJdbcUrl());
+        System.setProperty("DB_USERNAME", getUsername());
+        System.setProperty("DB_PASSWORD", getPassword());
     }
 
     @Override
@@ -59,8 +151,127 @@ public class MeitrexPostgresSqlContainer extends PostgreSQLContainer<MeitrexPost
         //do nothing, JVM handles shut down
     }
 
+    /**
+     * @return true if the plans of all statements are logged, see {@link QueryPlanCollector}
+     */
+    public static boolean isAutoExplainEnabled() {
+        return Boolean.getBoolean("meitrex.postgres.auto-explain");
+    }
+
+    /**
+     * @return the time it took to start the container, or null if it has not been started
+     */
+    public Duration getStartupDuration() {
+        return startupDuration;
+    }
+
+    /**
+     * Creates a new, empty database in this container.
+     *
+     * @return the name of the new database
+     * @see #getJdbcUrl(String)
+     */
+    public String createDatabase() throws SQLException {
+        final String databaseName = DATABASE_PREFIX + DATABASE_COUNTER.incrementAndGet();
+        try (Connection connection = getMaintenanceConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + quote(databaseName) + " WITH (FORCE)");
+            statement.execute("CREATE DATABASE " + quote(databaseName));
+        }
+        return databaseName;
+    }
+
+    /**
+     * @param databaseName the name of a database of this container
+     * @return the JDBC URL of the database
+     */
+    public String getJdbcUrl(final String databaseName) {
+        return getServerJdbcUrl() + databaseName;
+    }
+
+    /**
+     * Saves the current state of a database as a snapshot, i.e., as a template database with the given name.
+     * An existing snapshot with the same name is replaced.
+     * <p>
+     * PostgreSQL can only copy a database that nobody is connected to. Therefore, new connections to the
+     * database are refused while the snapshot is taken, and all open connections are terminated.
+     * Connection pools have to discard their connections afterwards.
+     *
+     * @param databaseName the name of the database to save
+     * @param snapshotName the name of the snapshot
+     */
+    public synchronized void createSnapshot(final String databaseName, final String snapshotName) throws SQLException {
+        try (Connection connection = getMaintenanceConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + quote(snapshotName));
+
+            statement.execute("ALTER DATABASE " + quote(databaseName) + " WITH ALLOW_CONNECTIONS false");
+            try {
+                statement.execute("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = '"
+                                  + databaseName.replace("'", "''") + "' AND pid <> pg_backend_pid()");
+                statement.execute("CREATE DATABASE " + quote(snapshotName) + " TEMPLATE " + quote(databaseName));
+            } finally {
+                statement.execute("ALTER DATABASE " + quote(databaseName) + " WITH ALLOW_CONNECTIONS true");
+            }
+
+            // nobody should connect to the snapshot, otherwise it cannot be used as a template anymore
+            statement.execute("ALTER DATABASE " + quote(snapshotName) + " WITH ALLOW_CONNECTIONS false");
+        }
+    }
+
+    /**
+     * Replaces a database with a copy of a snapshot created by {@link #createSnapshot(String, String)}.
+     * All open connections to the database are terminated, connection pools have to discard
+     * their connections afterwards.
+     *
+     * @param databaseName the name of the database to replace
+     * @param snapshotName the name of the snapshot
+     */
+    public synchronized void restoreSnapshot(final String databaseName, final String snapshotName) throws SQLException {
+        try (Connection connection = getMaintenanceConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + quote(databaseName) + " WITH (FORCE)");
+            statement.execute("CREATE DATABASE " + quote(databaseName) + " TEMPLATE " + quote(snapshotName));
+        }
+    }
+
+    /**
+     * @param jdbcUrl a JDBC URL
+     * @return true if the JDBC URL points to a database of this container
+     */
+    public boolean isDatabaseOfContainer(final String jdbcUrl) {
+        return isRunning() && jdbcUrl.startsWith(getServerJdbcUrl());
+    }
+
+    private Connection getMaintenanceConnection() throws SQLException {
+        return DriverManager.getConnection(getServerJdbcUrl() + MAINTENANCE_DATABASE, getUsername(), getPassword());
+    }
+
+    private String getServerJdbcUrl() {
+        return "jdbc:postgresql://" + getHost() + ":" + getMappedPort(POSTGRESQL_PORT) + "/";
+    }
+
+    private static String[] toCommand(final Map<String, String> settings) {
+        final List<String> command = new ArrayList<>();
+        command.add("postgres");
+        settings.forEach((name, value) -> {
+            command.add("-c");
+            command.add(name + "=" + value);
+        });
+        return command.toArray(String[]::new);
+    }
+
+    private static String quote(final String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
     @Override
     public void beforeAll(ExtensionContext context) throws Exception {
         getInstance().start();
     }
+
+    private static final class InstanceHolder {
+        // initialized on first access, the JVM guarantees that this happens exactly once
+        private static final MeitrexPostgresSqlContainer INSTANCE = new MeitrexPostgresSqlContainer();
+    }
 }
@@ -0,0 +1,58 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.*;
+
+/**
+ * Fails a test if its body exceeds a budget of wall time, allocated memory or SQL statements.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     &#64;Import(QueryCountingConfiguration.class)
+ *     public class MyTest {
+ *         &#64;Test
+ *         &#64;PerformanceBudget(maxMillis = 200, maxAllocatedBytes = 50_000_000, maxQueries = 5, warmupRuns = 3)
+ *         void test(GraphQlTester tester) {
+ *             // ...
+ * </pre>
+ * Only the test method is measured, not the setup of the test or the database reset by {@link ClearDatabase}.
+ * Allocated memory is measured for the thread of the test, which includes requests handled through MockMvc,
+ * but not work done on other threads. Counting statements requires {@link QueryCountingConfiguration}.
+ * <p>
+ * Warm-up runs execute the test method before the measured run, so that classes are loaded and hot code is
+ * compiled by the JIT. If the test is isolated by {@link TransactionalRollback}, the changes of each warm-up run
+ * are rolled back before the next run. Otherwise, the test method must be able to run several times in a row.
+ * The statements, GraphQL executions, events and query plans recorded during the warm-up runs are cleared before
+ * the measured run.
+ * <p>
+ * The annotation can also be put on a test class, to set the same budget for all its tests. A negative value
+ * means that there is no budget for that metric.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Inherited
+@ExtendWith(PerformanceBudgetExtension.class)
+public @interface PerformanceBudget {
+
+    /**
+     * The maximum wall time of the test method in milliseconds.
+     */
+    long maxMillis() default -1;
+
+    /**
+     * The maximum number of bytes allocated by the thread of the test.
+     */
+    long maxAllocatedBytes() default -1;
+
+    /**
+     * The maximum number of SQL statements executed, see {@link QueryRecorder}.
+     */
+    int maxQueries() default -1;
+
+    /**
+     * The number of unmeasured runs of the test method before the measured run.
+     */
+    int warmupRuns() default 0;
+}
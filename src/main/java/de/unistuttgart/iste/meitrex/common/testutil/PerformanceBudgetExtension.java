@@ -0,0 +1,163 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.ReflectionSupport;
+import org.opentest4j.AssertionFailedError;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JUnit test extension that enforces {@link PerformanceBudget}s. It is registered by the annotation.
+ * <p>
+ * If a budget is exceeded, the test fails with an {@link AssertionFailedError} whose expected value lists the
+ * budgets and whose actual value lists the measurements, so IDEs show the difference.
+ */
+@Slf4j
+public class PerformanceBudgetExtension implements InvocationInterceptor {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Override
+    public void interceptTestMethod(final Invocation<Void> invocation,
+                                    final ReflectiveInvocationContext<Method> invocationContext,
+                                    final ExtensionContext extensionContext) throws Throwable {
+        measure(invocation, invocationContext, extensionContext);
+    }
+
+    @Override
+    public void interceptTestTemplateMethod(final Invocation<Void> invocation,
+                                            final ReflectiveInvocationContext<Method> invocationContext,
+                                            final ExtensionContext extensionContext) throws Throwable {
+        measure(invocation, invocationContext, extensionContext);
+    }
+
+    private static void measure(final Invocation<Void> invocation,
+                                final ReflectiveInvocationContext<Method> invocationContext,
+                                final ExtensionContext extensionContext) throws Throwable {
+        final PerformanceBudget budget = findBudget(extensionContext);
+        if (budget == null) {
+            invocation.proceed();
+            return;
+        }
+
+        final QueryRecorder queryRecorder = budget.maxQueries() >= 0 ? getQueryRecorder(extensionContext) : null;
+        if (budget.maxAllocatedBytes() >= 0) {
+            enableAllocationMeasurement();
+        }
+
+        for (int i = 0; i < budget.warmupRuns(); i++) {
+            runWarmup(invocationContext, extensionContext);
+        }
+        if (budget.warmupRuns() > 0) {
+            clearRecordings(extensionContext);
+        }
+
+        final int queriesBefore = queryRecorder != null ? queryRecorder.getQueries().size() : 0;
+        final long allocatedBefore = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+        final long start = System.nanoTime();
+
+        invocation.proceed();
+
+        final long millis = (System.nanoTime() - start) / 1_000_000;
+        final long allocatedBytes = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        final int queries = queryRecorder != null ? queryRecorder.getQueries().size() - queriesBefore : -1;
+
+        log.info("{} took {} ms, allocated {} bytes and executed {} statement(s)",
+                extensionContext.getDisplayName(), millis, allocatedBytes, queries >= 0 ? queries : "unknown");
+
+        final List<Metric> metrics = List.of(
+                new Metric("wall time (ms)", budget.maxMillis(), millis),
+                new Metric("allocated bytes", budget.maxAllocatedBytes(), allocatedBytes),
+                new Metric("SQL statements", budget.maxQueries(), queries));
+        checkBudget(extensionContext, metrics);
+    }
+
+    private static PerformanceBudget findBudget(final ExtensionContext context) {
+        return AnnotationSupport.findAnnotation(context.getTestMethod(), PerformanceBudget.class)
+                .or(() -> AnnotationSupport.findAnnotation(context.getTestClass(), PerformanceBudget.class))
+                .orElse(null);
+    }
+
+    private static QueryRecorder getQueryRecorder(final ExtensionContext context) {
+        final QueryRecorder queryRecorder = SpringExtension.getApplicationContext(context)
+                .getBeanProvider(QueryRecorder.class)
+                .getIfAvailable();
+        if (queryRecorder == null) {
+            throw new ExtensionConfigurationException("A budget of SQL statements requires a QueryRecorder bean, "
+                                                      + "import QueryCountingConfiguration into the test");
+        }
+        return queryRecorder;
+    }
+
+    private static void enableAllocationMeasurement() {
+        if (!THREAD_MX_BEAN.isThreadAllocatedMemorySupported()) {
+            throw new ExtensionConfigurationException("This JVM cannot measure allocated memory per thread");
+        }
+        if (!THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled()) {
+            THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    private static void runWarmup(final ReflectiveInvocationContext<Method> invocationContext,
+                                  final ExtensionContext extensionContext) throws Throwable {
+        final Executable run = () -> ReflectionSupport.invokeMethod(invocationContext.getExecutable(),
+                invocationContext.getTarget().orElse(null),
+                invocationContext.getArguments().toArray());
+
+        if (TransactionalRollback.isActive(extensionContext)) {
+            TransactionalRollback.runAndRollBack(extensionContext, run);
+        } else {
+            run.execute();
+        }
+    }
+
+    /**
+     * Removes what the warm-up runs recorded, so that the measured run only sees its own statements and events.
+     */
+    private static void clearRecordings(final ExtensionContext context) {
+        final ApplicationContext applicationContext = SpringExtension.getApplicationContext(context);
+        applicationContext.getBeanProvider(QueryRecorder.class).ifAvailable(QueryRecorder::clear);
+        applicationContext.getBeanProvider(GraphQlExecutionRecorder.class).ifAvailable(GraphQlExecutionRecorder::clear);
+        applicationContext.getBeanProvider(TopicEventRecorder.class).ifAvailable(TopicEventRecorder::clear);
+        QueryPlanCaptureExtension.clearPlans(context);
+    }
+
+    private static void checkBudget(final ExtensionContext context, final List<Metric> metrics) {
+        final List<String> exceeded = new ArrayList<>();
+        final StringBuilder expected = new StringBuilder();
+        final StringBuilder actual = new StringBuilder();
+
+        for (final Metric metric : metrics) {
+            if (metric.budget() < 0) {
+                continue;
+            }
+            expected.append(metric.name()).append(": ").append(metric.budget()).append('\n');
+            actual.append(metric.name()).append(": ").append(metric.value()).append('\n');
+            if (metric.value() > metric.budget()) {
+                exceeded.add("%s %d > %d%s".formatted(metric.name(), metric.value(), metric.budget(),
+                        metric.budget() > 0 ? " (+%d%%)".formatted((metric.value() - metric.budget()) * 100 / metric.budget()) : ""));
+            }
+        }
+
+        if (!exceeded.isEmpty()) {
+            throw new AssertionFailedError("Performance budget of " + context.getDisplayName() + " exceeded: "
+                                           + String.join(", ", exceeded),
+                    expected.toString(), actual.toString());
+        }
+    }
+
+    private record Metric(String name, long budget, long value) {
+    }
+}
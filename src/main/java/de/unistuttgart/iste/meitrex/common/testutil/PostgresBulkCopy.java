@@ -0,0 +1,151 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Utility class for writing large amounts of rows to a PostgreSQL database with the {@code COPY} protocol,
+ * which is much faster than inserting rows one by one.
+ * <p>
+ * Rows are converted to CSV lazily while they are sent to the database, so memory use does not depend on
+ * the number of rows.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class PostgresBulkCopy {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Writes the given rows into a table.
+     *
+     * @param dataSource the data source of a PostgreSQL database
+     * @param table      the table to write to
+     * @param columns    the columns of the table, in the order of the values of each row
+     * @param rows       the rows. Values are written with {@link Object#toString()}, {@code null} is written as NULL.
+     * @return the number of written rows
+     */
+    public static long copyIn(final DataSource dataSource,
+                              final String table,
+                              final List<String> columns,
+                              final Stream<? extends List<?>> rows) throws SQLException {
+        final String sql = "COPY %s (%s) FROM STDIN WITH (FORMAT csv)".formatted(table, String.join(", ", columns));
+        return copyIn(dataSource, sql, new CsvRowReader(rows.iterator()));
+    }
+
+    /**
+     * Runs a {@code COPY ... FROM STDIN} statement with the given input.
+     *
+     * @param dataSource the data source of a PostgreSQL database
+     * @param sql        the {@code COPY} statement
+     * @param input      the input of the statement, in the format expected by the statement
+     * @return the number of written rows
+     */
+    public static long copyIn(final DataSource dataSource, final String sql, final Reader input) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); input) {
+            final CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            return copyManager.copyIn(sql, input, BUFFER_SIZE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Runs a {@code COPY ... FROM STDIN} statement with the given input on the given connection,
+     * e.g., to take part in a transaction of the connection. The connection is not closed.
+     *
+     * @param connection a connection to a PostgreSQL database
+     * @param sql        the {@code COPY} statement
+     * @param input      the input of the statement, in the format expected by the statement
+     * @return the number of written rows
+     */
+    public static long copyIn(final Connection connection, final String sql, final InputStream input)
+            throws SQLException {
+        try (input) {
+            final CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            return copyManager.copyIn(sql, input, BUFFER_SIZE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Formats a value as a CSV field as expected by {@code COPY ... WITH (FORMAT csv)}.
+     * {@code null} is an empty, unquoted field; all other values are quoted, so that an empty string
+     * is not read as NULL.
+     */
+    static void appendCsvField(final StringBuilder line, final Object value) {
+        if (value == null) {
+            return;
+        }
+        line.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Reader that converts rows to CSV lines when they are read.
+     */
+    private static final class CsvRowReader extends Reader {
+
+        private final Iterator<? extends List<?>> rows;
+        private final StringBuilder line = new StringBuilder();
+        private int position = 0;
+
+        private CsvRowReader(final Iterator<? extends List<?>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+
+            int read = 0;
+            while (read < length) {
+                if (position == line.length() && !nextLine()) {
+                    break;
+                }
+                final int count = Math.min(length - read, line.length() - position);
+                line.getChars(position, position + count, buffer, offset + read);
+                position += count;
+                read += count;
+            }
+            return read == 0 ? -1 : read;
+        }
+
+        private boolean nextLine() {
+            if (!rows.hasNext()) {
+                return false;
+            }
+            line.setLength(0);
+            position = 0;
+
+            final List<?> row = rows.next();
+            for (int i = 0; i < row.size(); i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                appendCsvField(line, row.get(i));
+            }
+            line.append('\n');
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // the rows are consumed lazily, nothing to close
+        }
+    }
+}
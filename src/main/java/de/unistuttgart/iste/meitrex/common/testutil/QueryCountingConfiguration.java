@@ -0,0 +1,43 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+/**
+ * This test configuration records all statements executed through the {@code dataSource} bean
+ * in a {@link QueryRecorder} bean.
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     &#64;Import(QueryCountingConfiguration.class)
+ *     public class Test {
+ * </pre>
+ * The recorder can then be injected into test methods, see {@link QueryRecorder}.
+ */
+@TestConfiguration
+public class QueryCountingConfiguration {
+
+    @Bean
+    public QueryRecorder queryRecorder() {
+        return new QueryRecorder();
+    }
+
+    // static, so that the post processor does not cause this configuration to be initialized early
+    @Bean
+    public static BeanPostProcessor queryRecordingDataSourcePostProcessor(final ObjectProvider<QueryRecorder> queryRecorder) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource
+                    && !(bean instanceof RecordingDataSource)) {
+                    return new RecordingDataSource(dataSource, queryRecorder.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,166 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeDiagnosingMatcher;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Hamcrest matchers for statements recorded by {@link QueryRecorder}, e.g., to detect N+1 queries.
+ * <pre>
+ *     assertThat(queryRecorder.getQueries(), executedAtMost(3, queries()));
+ *     assertThat(queryRecorder.getQueries(), noRepeatedStatements());
+ * </pre>
+ * Failure messages list the offending statements.
+ */
+public class QueryMatchers {
+    private QueryMatchers() {
+    }
+
+    /**
+     * Selects a subset of the recorded statements.
+     *
+     * @param description the description of the subset, e.g., "queries"
+     * @param predicate   the predicate statements of the subset fulfill
+     */
+    public record Selector(String description, Predicate<RecordedQuery> predicate) {
+    }
+
+    /**
+     * @return selects {@code SELECT} statements
+     */
+    public static Selector queries() {
+        return ofType("queries", RecordedQuery.Type.SELECT);
+    }
+
+    /**
+     * @return selects {@code INSERT} statements
+     */
+    public static Selector inserts() {
+        return ofType("inserts", RecordedQuery.Type.INSERT);
+    }
+
+    /**
+     * @return selects {@code UPDATE} statements
+     */
+    public static Selector updates() {
+        return ofType("updates", RecordedQuery.Type.UPDATE);
+    }
+
+    /**
+     * @return selects {@code DELETE} statements
+     */
+    public static Selector deletes() {
+        return ofType("deletes", RecordedQuery.Type.DELETE);
+    }
+
+    /**
+     * @return selects all statements
+     */
+    public static Selector statements() {
+        return new Selector("statements", query -> true);
+    }
+
+    /**
+     * Matcher that checks that at most the given number of the selected statements were executed.
+     * A batch counts as one statement.
+     *
+     * @param maximum  the maximum number of statements
+     * @param selector the statements to count
+     * @return the matcher
+     */
+    public static Matcher<Collection<RecordedQuery>> executedAtMost(final int maximum, final Selector selector) {
+        return executedCount("at most", count -> count <= maximum, maximum, selector);
+    }
+
+    /**
+     * Matcher that checks that exactly the given number of the selected statements were executed.
+     * A batch counts as one statement.
+     *
+     * @param expected the number of statements
+     * @param selector the statements to count
+     * @return the matcher
+     */
+    public static Matcher<Collection<RecordedQuery>> executedExactly(final int expected, final Selector selector) {
+        return executedCount("exactly", count -> count == expected, expected, selector);
+    }
+
+    /**
+     * Matcher that checks that no two statements differ only in their parameter values, which is typical for
+     * N+1 queries. Statements are compared by their {@link RecordedQuery#normalizedSql() normalized SQL}.
+     * A batch counts as one statement.
+     *
+     * @return the matcher
+     */
+    public static Matcher<Collection<RecordedQuery>> noRepeatedStatements() {
+        return new TypeSafeDiagnosingMatcher<>() {
+            @Override
+            protected boolean matchesSafely(final Collection<RecordedQuery> queries, final Description mismatch) {
+                final Map<String, List<RecordedQuery>> byNormalizedSql = new LinkedHashMap<>();
+                for (final RecordedQuery query : queries) {
+                    byNormalizedSql.computeIfAbsent(query.normalizedSql(), key -> new ArrayList<>()).add(query);
+                }
+
+                boolean matches = true;
+                for (final Map.Entry<String, List<RecordedQuery>> entry : byNormalizedSql.entrySet()) {
+                    if (entry.getValue().size() > 1) {
+                        if (matches) {
+                            mismatch.appendText("repeated statements:");
+                        }
+                        matches = false;
+                        mismatch.appendText("\n  ").appendValue(entry.getValue().size()).appendText("x ")
+                                .appendText(entry.getKey());
+                        appendStatements(mismatch, entry.getValue(), "\n    ");
+                    }
+                }
+                return matches;
+            }
+
+            @Override
+            public void describeTo(final Description description) {
+                description.appendText("no statements that differ only in parameter values");
+            }
+        };
+    }
+
+    private static Matcher<Collection<RecordedQuery>> executedCount(final String comparison,
+                                                                    final Predicate<Integer> countMatches,
+                                                                    final int expected,
+                                                                    final Selector selector) {
+        return new TypeSafeDiagnosingMatcher<>() {
+            @Override
+            protected boolean matchesSafely(final Collection<RecordedQuery> queries, final Description mismatch) {
+                final List<RecordedQuery> selected = queries.stream()
+                        .filter(selector.predicate())
+                        .toList();
+                if (countMatches.test(selected.size())) {
+                    return true;
+                }
+                mismatch.appendText("executed ").appendValue(selected.size()).appendText(" " + selector.description())
+                        .appendText(":");
+                appendStatements(mismatch, selected, "\n  ");
+                return false;
+            }
+
+            @Override
+            public void describeTo(final Description description) {
+                description.appendText(comparison + " ").appendValue(expected)
+                        .appendText(" " + selector.description());
+            }
+        };
+    }
+
+    private static Selector ofType(final String description, final RecordedQuery.Type type) {
+        return new Selector(description, query -> query.type() == type);
+    }
+
+    private static void appendStatements(final Description description,
+                                         final List<RecordedQuery> queries,
+                                         final String separator) {
+        for (final RecordedQuery query : queries) {
+            description.appendText(separator).appendText(query.toString());
+        }
+    }
+}
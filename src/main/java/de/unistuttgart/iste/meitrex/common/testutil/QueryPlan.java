@@ -0,0 +1,68 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The plan of a statement executed during a test, as logged by {@code auto_explain}.
+ *
+ * @param query the SQL of the statement
+ * @param plan  the root node of the plan, in the JSON format of {@code EXPLAIN (FORMAT JSON)}
+ * @see QueryPlanCollector
+ */
+public record QueryPlan(String query, JsonNode plan) {
+
+    /**
+     * A node of a plan.
+     *
+     * @param nodeType the type of the node, e.g., "Seq Scan" or "Index Scan"
+     * @param relation the table the node reads, or null
+     * @param index    the index the node uses, or null
+     * @param rows     the number of rows the node read per loop, i.e., the rows it returned plus the rows removed
+     *                 by its filter, or the planner's estimate of the rows it returns if the plan has no actual values
+     */
+    public record Node(String nodeType, String relation, String index, long rows) {
+
+        @Override
+        public String toString() {
+            final StringBuilder result = new StringBuilder(nodeType);
+            if (index != null) {
+                result.append(" using ").append(index);
+            }
+            if (relation != null) {
+                result.append(" on ").append(relation);
+            }
+            return result.append(" (").append(rows).append(" rows)").toString();
+        }
+    }
+
+    /**
+     * @return all nodes of the plan, parents before their children
+     */
+    public List<Node> nodes() {
+        final List<Node> nodes = new ArrayList<>();
+        collectNodes(plan, nodes);
+        return nodes;
+    }
+
+    @Override
+    public String toString() {
+        return query + " " + nodes();
+    }
+
+    private static void collectNodes(final JsonNode planNode, final List<Node> nodes) {
+        final long rows = planNode.has("Actual Rows")
+                ? planNode.path("Actual Rows").asLong() + planNode.path("Rows Removed by Filter").asLong()
+                : planNode.path("Plan Rows").asLong();
+        nodes.add(new Node(planNode.path("Node Type").asText(),
+                planNode.path("Relation Name").textValue(),
+                planNode.path("Index Name").textValue(),
+                rows));
+
+        for (final JsonNode child : planNode.path("Plans")) {
+            collectNodes(child, nodes);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.junit.jupiter.api.extension.*;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * JUnit test extension that starts a {@link QueryPlanCollector} before each test and injects it into test methods.
+ * It has no effect unless the plans are logged, i.e., the system property {@code meitrex.postgres.auto-explain}
+ * is {@code true}.
+ * <p>
+ * The collector is started after the other extensions of {@link GraphQlApiTest} have prepared the test,
+ * so the plans of their statements are not collected. <br>
+ * This extension is automatically used by {@link GraphQlApiTest}.
+ */
+public class QueryPlanCaptureExtension implements BeforeEachCallback, ParameterResolver {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(QueryPlanCaptureExtension.class);
+    private static final String COLLECTOR_KEY = "collector";
+
+    @Override
+    public void beforeEach(final ExtensionContext context) throws SQLException {
+        if (!MeitrexPostgresSqlContainer.isAutoExplainEnabled()) {
+            return;
+        }
+        final DataSource dataSource = SpringExtension.getApplicationContext(context).getBean("dataSource", DataSource.class);
+        context.getStore(NAMESPACE).put(COLLECTOR_KEY, QueryPlanCollector.startCollecting(dataSource));
+    }
+
+    /**
+     * Removes the plans collected so far in the test, e.g., the plans of warm-up runs.
+     *
+     * @param context the extension context of a test
+     */
+    static void clearPlans(final ExtensionContext context) {
+        final QueryPlanCollector collector = context.getStore(NAMESPACE).get(COLLECTOR_KEY, QueryPlanCollector.class);
+        if (collector != null) {
+            collector.clear();
+        }
+    }
+
+    @Override
+    public boolean supportsParameter(final ParameterContext parameterContext,
+                                     final ExtensionContext extensionContext) throws ParameterResolutionException {
+        return parameterContext.getParameter().getType().equals(QueryPlanCollector.class);
+    }
+
+    @Override
+    public Object resolveParameter(final ParameterContext parameterContext,
+                                   final ExtensionContext extensionContext) throws ParameterResolutionException {
+        final QueryPlanCollector collector = extensionContext.getStore(NAMESPACE).get(COLLECTOR_KEY, QueryPlanCollector.class);
+        if (collector == null) {
+            throw new ParameterResolutionException("Query plans are not logged, set the system property "
+                                                   + "meitrex.postgres.auto-explain=true to collect them");
+        }
+        return collector;
+    }
+}
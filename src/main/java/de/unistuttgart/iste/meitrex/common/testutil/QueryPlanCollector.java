@@ -0,0 +1,205 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Collects the plans of the statements executed in a database during a test, as logged by {@code auto_explain}.
+ * This requires the system property {@code meitrex.postgres.auto-explain=true}, see {@link MeitrexPostgresSqlContainer}.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     public class MyTest {
+ *         &#64;Test
+ *         void test(GraphQlTester tester, QueryPlanCollector queryPlans) {
+ *             // ...
+ *             assertThat(queryPlans.getPlans(), noSeqScanOn("course", 1000));
+ *             assertThat(queryPlans.getPlans(), usesIndex("course_start_date_idx"));
+ *         }
+ * </pre>
+ * Plans of all connections to the database are collected, including statements of other threads, but not the
+ * statements run by the extensions of {@link GraphQlApiTest} to prepare the test.
+ * Plans are only meaningful with realistic amounts of data, e.g., loaded with {@link Dataset} or
+ * {@link TestUserGenerator}, as PostgreSQL prefers sequential scans for small tables.
+ *
+ * @see QueryPlanMatchers
+ */
+public class QueryPlanCollector {
+
+    /**
+     * Contained in the statements of this class, so that their plans are not collected.
+     */
+    private static final String OWN_STATEMENT_MARKER = "meitrex-plan-capture";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int READ_CHUNK_SIZE = 4 * 1024 * 1024;
+    // PostgreSQL cannot return more than 1 GiB in one value
+    private static final int MAX_READ_SIZE = 512 * 1024 * 1024;
+    private static final Duration MARKER_TIMEOUT = Duration.ofSeconds(10);
+    private static final long POLL_NANOS = Duration.ofMillis(5).toNanos();
+
+    private final DataSource dataSource;
+    private final String database;
+    private final List<QueryPlan> plans = new ArrayList<>();
+    private long logOffset;
+    private boolean started = false;
+
+    private QueryPlanCollector(final DataSource dataSource, final String database, final long logOffset) {
+        this.dataSource = dataSource;
+        this.database = database;
+        this.logOffset = logOffset;
+    }
+
+    /**
+     * Creates a collector for the plans of statements that are executed from now on.
+     * <p>
+     * The logging collector writes the log asynchronously, so plans of statements that completed before this call
+     * may still be written after the current end of the log. Therefore, the collector runs a marker statement and
+     * skips everything up to its plan.
+     *
+     * @param dataSource a data source of a database of the {@link MeitrexPostgresSqlContainer}
+     * @return the collector
+     */
+    static QueryPlanCollector startCollecting(final DataSource dataSource) throws SQLException {
+        final QueryPlanCollector collector;
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT current_database(), "
+                                                          + "(SELECT size FROM pg_stat_file('"
+                                                          + MeitrexPostgresSqlContainer.PLAN_LOG_FILE + "', true)) "
+                                                          + "/* " + OWN_STATEMENT_MARKER + " */")) {
+            resultSet.next();
+            collector = new QueryPlanCollector(dataSource, resultSet.getString(1), resultSet.getLong(2));
+        }
+        collector.clear();
+        return collector;
+    }
+
+    /**
+     * Returns the plans of the statements executed since the collector was created or last cleared.
+     * Waits until the plans of all statements completed before the call have been logged.
+     *
+     * @return the plans, in the order the statements completed
+     */
+    public synchronized List<QueryPlan> getPlans() {
+        try (Connection connection = dataSource.getConnection()) {
+            final String marker = OWN_STATEMENT_MARKER + ":" + UUID.randomUUID();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SELECT 1 /* " + marker + " */");
+            }
+            readUntilMarker(connection, marker);
+            return List.copyOf(plans);
+        } catch (final SQLException e) {
+            throw new IllegalStateException("Could not read the plan log", e);
+        }
+    }
+
+    /**
+     * Removes all collected plans. Plans of statements executed after this call are still collected.
+     */
+    public synchronized void clear() {
+        getPlans();
+        plans.clear();
+        started = true;
+    }
+
+    private void readUntilMarker(final Connection connection, final String marker) throws SQLException {
+        // the logging collector writes the log asynchronously
+        final long deadline = System.nanoTime() + MARKER_TIMEOUT.toNanos();
+        while (!readNewEntries(connection, marker)) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("The plans were not logged within " + MARKER_TIMEOUT
+                                                + ", is auto_explain enabled?");
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+    }
+
+    /**
+     * Reads the complete entries written to the log since the last call.
+     *
+     * @return true if the entry of the marker statement has been read
+     */
+    private boolean readNewEntries(final Connection connection, final String marker) throws SQLException {
+        boolean markerFound = false;
+        int chunkSize = READ_CHUNK_SIZE;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT pg_read_binary_file(?, ?, ?, true) /* " + OWN_STATEMENT_MARKER + " */")) {
+            while (true) {
+                statement.setString(1, MeitrexPostgresSqlContainer.PLAN_LOG_FILE);
+                statement.setLong(2, logOffset);
+                statement.setLong(3, chunkSize);
+
+                final byte[] chunk;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    chunk = resultSet.getBytes(1);
+                }
+                if (chunk == null || chunk.length == 0) {
+                    return markerFound;
+                }
+
+                // the last line may not be complete yet, it is read again by the next call
+                int lineStart = 0;
+                for (int i = 0; i < chunk.length; i++) {
+                    if (chunk[i] == '\n') {
+                        markerFound |= parseEntry(new String(chunk, lineStart, i - lineStart, StandardCharsets.UTF_8), marker);
+                        lineStart = i + 1;
+                    }
+                }
+                logOffset += lineStart;
+                if (lineStart == 0) {
+                    if (chunk.length < chunkSize) {
+                        return markerFound;
+                    }
+                    // a full chunk without a line break, the entry is longer than the chunk
+                    if (chunkSize > MAX_READ_SIZE / 2) {
+                        throw new IllegalStateException("A plan in " + MeitrexPostgresSqlContainer.PLAN_LOG_FILE
+                                                        + " is longer than " + MAX_READ_SIZE + " bytes");
+                    }
+                    chunkSize *= 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the entry is the plan of the marker statement
+     */
+    private boolean parseEntry(final String line, final String marker) {
+        try {
+            final JsonNode entry = OBJECT_MAPPER.readTree(line);
+            final String message = entry.path("message").asText();
+            final int planStart = message.indexOf("plan:");
+            if (!database.equals(entry.path("dbname").asText()) || !message.startsWith("duration:") || planStart < 0) {
+                return false;
+            }
+
+            final JsonNode plan = OBJECT_MAPPER.readTree(message.substring(planStart + "plan:".length()));
+            final String query = plan.path("Query Text").asText();
+            if (query.contains(OWN_STATEMENT_MARKER)) {
+                return query.contains(marker);
+            }
+            plans.add(new QueryPlan(query.strip(), plan.path("Plan")));
+            return false;
+        } catch (final IOException e) {
+            if (!started) {
+                // the start offset may be in the middle of an entry, entries before the start are skipped anyway
+                return false;
+            }
+            throw new UncheckedIOException("Could not parse plan log entry " + line, e);
+        }
+    }
+}
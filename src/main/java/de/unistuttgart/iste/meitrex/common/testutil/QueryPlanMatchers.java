@@ -0,0 +1,130 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeDiagnosingMatcher;
+
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Hamcrest matchers for plans collected by {@link QueryPlanCollector}, e.g., to detect missing indexes.
+ * <pre>
+ *     assertThat(queryPlans.getPlans(), noSeqScanOn("course", 1000));
+ *     assertThat(queryPlans.getPlans(), usesIndex("course_start_date_idx"));
+ * </pre>
+ * Table and index names are compared case-insensitively and without schema.
+ * Failure messages list the offending plans.
+ */
+public class QueryPlanMatchers {
+    private QueryPlanMatchers() {
+    }
+
+    /**
+     * Matcher that checks that no plan reads the given table with a sequential scan.
+     *
+     * @param table the table
+     * @return the matcher
+     */
+    public static Matcher<Collection<QueryPlan>> noSeqScanOn(final String table) {
+        return noSeqScanOn(table, -1);
+    }
+
+    /**
+     * Matcher that checks that no plan reads more than the given number of rows of the table with a sequential
+     * scan. Sequential scans of small tables are usually fine, as they are cheaper than using an index.
+     *
+     * @param table   the table
+     * @param maxRows the maximum number of rows a sequential scan may read
+     * @return the matcher
+     */
+    public static Matcher<Collection<QueryPlan>> noSeqScanOn(final String table, final long maxRows) {
+        return noSeqScans("of " + table, table, maxRows);
+    }
+
+    /**
+     * Matcher that checks that no plan reads more than the given number of rows of any table with a
+     * sequential scan.
+     *
+     * @param maxRows the maximum number of rows a sequential scan may read
+     * @return the matcher
+     */
+    public static Matcher<Collection<QueryPlan>> noSeqScansAbove(final long maxRows) {
+        return noSeqScans("of any table", null, maxRows);
+    }
+
+    /**
+     * Matcher that checks that at least one plan uses the given index.
+     *
+     * @param index the name of the index
+     * @return the matcher
+     */
+    public static Matcher<Collection<QueryPlan>> usesIndex(final String index) {
+        return new TypeSafeDiagnosingMatcher<>() {
+            @Override
+            protected boolean matchesSafely(final Collection<QueryPlan> plans, final Description mismatch) {
+                final boolean used = plans.stream()
+                        .flatMap(plan -> plan.nodes().stream())
+                        .anyMatch(node -> sameName(node.index(), index));
+                if (!used) {
+                    mismatch.appendText("no plan uses it, plans:");
+                    appendPlans(mismatch, plans);
+                }
+                return used;
+            }
+
+            @Override
+            public void describeTo(final Description description) {
+                description.appendText("a plan using index ").appendValue(index);
+            }
+        };
+    }
+
+    private static Matcher<Collection<QueryPlan>> noSeqScans(final String tableDescription,
+                                                             final String table,
+                                                             final long maxRows) {
+        return new TypeSafeDiagnosingMatcher<>() {
+            @Override
+            protected boolean matchesSafely(final Collection<QueryPlan> plans, final Description mismatch) {
+                boolean matches = true;
+                for (final QueryPlan plan : plans) {
+                    for (final QueryPlan.Node node : plan.nodes()) {
+                        if (node.nodeType().equals("Seq Scan")
+                            && (table == null || sameName(node.relation(), table))
+                            && node.rows() > maxRows) {
+                            if (matches) {
+                                mismatch.appendText("sequential scans:");
+                            }
+                            matches = false;
+                            mismatch.appendText("\n  ").appendText(node.toString())
+                                    .appendText(" in ").appendText(plan.query());
+                        }
+                    }
+                }
+                return matches;
+            }
+
+            @Override
+            public void describeTo(final Description description) {
+                description.appendText("no sequential scans " + tableDescription);
+                if (maxRows >= 0) {
+                    description.appendText(" reading more than ").appendValue(maxRows).appendText(" rows");
+                }
+            }
+        };
+    }
+
+    private static boolean sameName(final String actual, final String expected) {
+        if (actual == null) {
+            return false;
+        }
+        final String unqualified = expected.substring(expected.lastIndexOf('.') + 1);
+        return actual.toLowerCase(Locale.ROOT).equals(unqualified.toLowerCase(Locale.ROOT));
+    }
+
+    private static void appendPlans(final Description description, final Collection<QueryPlan> plans) {
+        for (final QueryPlan plan : plans) {
+            description.appendText("\n  ").appendText(plan.toString());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the statements executed through the {@code dataSource} bean of an application context.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     &#64;Import(QueryCountingConfiguration.class)
+ *     public class MyTest {
+ *         &#64;Test
+ *         void test(GraphQlTester tester, QueryRecorder queryRecorder) {
+ *             List&lt;RecordedQuery&gt; queries = queryRecorder.recordDuring(() -&gt; tester.document(query).execute());
+ *             assertThat(queries, executedAtMost(3, queries()));
+ *             assertThat(queries, noRepeatedStatements());
+ *         }
+ * </pre>
+ * Statements of all threads are recorded. The recorder is cleared before each test by
+ * {@link QueryRecordingExtension}, so {@link #getQueries()} returns the statements of the current test.
+ * Statements sent with {@code COPY} are not recorded.
+ *
+ * @see QueryMatchers
+ */
+public class QueryRecorder {
+
+    private final List<RecordedQuery> queries = new ArrayList<>();
+
+    void record(final RecordedQuery query) {
+        synchronized (queries) {
+            queries.add(query);
+        }
+    }
+
+    /**
+     * @return the statements recorded since the recorder was last cleared, in the order they completed
+     */
+    public List<RecordedQuery> getQueries() {
+        synchronized (queries) {
+            return List.copyOf(queries);
+        }
+    }
+
+    /**
+     * Removes all recorded statements.
+     */
+    public void clear() {
+        synchronized (queries) {
+            queries.clear();
+        }
+    }
+
+    /**
+     * Runs the given action, e.g., a GraphQL request, and returns the statements recorded while it ran.
+     * The statements are also kept in the recorder.
+     *
+     * @param action the action
+     * @return the statements recorded while the action ran
+     */
+    public List<RecordedQuery> recordDuring(final Runnable action) {
+        final int start;
+        synchronized (queries) {
+            start = queries.size();
+        }
+        action.run();
+        synchronized (queries) {
+            return List.copyOf(queries.subList(start, queries.size()));
+        }
+    }
+}
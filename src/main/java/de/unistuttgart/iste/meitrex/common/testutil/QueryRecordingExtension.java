@@ -0,0 +1,49 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.junit.jupiter.api.extension.*;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * JUnit test extension that clears the {@link QueryRecorder} and the {@link GraphQlExecutionRecorder} of the
+ * application context before each test and injects them into test methods.
+ * It has no effect if the context does not contain the recorders, i.e., if {@link QueryCountingConfiguration}
+ * and {@link GraphQlInstrumentationConfiguration} are not imported.
+ * <p>
+ * The recorder is cleared after the other extensions of {@link GraphQlApiTest} have prepared the test,
+ * so their statements are not recorded. <br>
+ * This extension is automatically used by {@link GraphQlApiTest}.
+ */
+public class QueryRecordingExtension implements BeforeEachCallback, ParameterResolver {
+
+    @Override
+    public void beforeEach(final ExtensionContext context) {
+        SpringExtension.getApplicationContext(context)
+                .getBeanProvider(QueryRecorder.class)
+                .ifAvailable(QueryRecorder::clear);
+        SpringExtension.getApplicationContext(context)
+                .getBeanProvider(GraphQlExecutionRecorder.class)
+                .ifAvailable(GraphQlExecutionRecorder::clear);
+    }
+
+    @Override
+    public boolean supportsParameter(final ParameterContext parameterContext,
+                                     final ExtensionContext extensionContext) throws ParameterResolutionException {
+        final Class<?> type = parameterContext.getParameter().getType();
+        return type.equals(QueryRecorder.class) || type.equals(GraphQlExecutionRecorder.class);
+    }
+
+    @Override
+    public Object resolveParameter(final ParameterContext parameterContext,
+                                   final ExtensionContext extensionContext) throws ParameterResolutionException {
+        final Class<?> type = parameterContext.getParameter().getType();
+        final Object recorder = SpringExtension.getApplicationContext(extensionContext)
+                .getBeanProvider(type)
+                .getIfAvailable();
+        if (recorder == null) {
+            throw new ParameterResolutionException(type.equals(QueryRecorder.class)
+                    ? "No QueryRecorder found, import QueryCountingConfiguration to record queries"
+                    : "No GraphQlExecutionRecorder found, import GraphQlInstrumentationConfiguration to record requests");
+        }
+        return recorder;
+    }
+}
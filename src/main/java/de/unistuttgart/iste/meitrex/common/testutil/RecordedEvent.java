@@ -0,0 +1,26 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.time.Instant;
+
+/**
+ * An event published through the recording {@link de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher}
+ * of {@link RecordingTopicPublisherConfiguration}.
+ *
+ * @param sequence  the position of the event among all events recorded by the recorder, starting at 0
+ * @param topic     the name of the publisher method that published the event, e.g., "notifyUserWorkedOnContent",
+ *                  as each method publishes to its own topic
+ * @param payload   the event DTO built by the publisher method, as it would be sent to Dapr
+ * @param timestamp the time the event was published
+ */
+public record RecordedEvent(long sequence, String topic, Object payload, Instant timestamp) {
+
+    /**
+     * @param type the expected type of the payload
+     * @param <T>  the expected type of the payload
+     * @return the payload
+     * @throws ClassCastException if the payload is not of the given type
+     */
+    public <T> T payloadAs(final Class<T> type) {
+        return type.cast(payload);
+    }
+}
@@ -0,0 +1,52 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.util.Map;
+
+/**
+ * A GraphQL request executed by the application, recorded by {@link GraphQlExecutionRecorder}.
+ *
+ * @param operationName the name of the operation, or null if it has none
+ * @param document      the GraphQL document
+ * @param fields        the statistics of each field that was fetched, by field coordinates, e.g., "Course.chapters"
+ * @param dataLoaders   the statistics of each DataLoader that was used, by name. Spring GraphQL names the DataLoaders
+ *                      of {@code @BatchMapping} methods by field coordinates, e.g., "Course.chapters".
+ * @param durationNanos the time it took to execute the request, in nanoseconds
+ */
+public record RecordedGraphQlExecution(String operationName,
+                                       String document,
+                                       Map<String, FieldStats> fields,
+                                       Map<String, DataLoaderStats> dataLoaders,
+                                       long durationNanos) {
+
+    /**
+     * @param fetchCount the number of times the field was fetched, i.e., its data fetcher was called
+     * @param totalNanos the time from calling the data fetcher until the value was available, summed over all
+     *                   fetches. For values loaded by a DataLoader, this includes waiting for the batch.
+     */
+    public record FieldStats(long fetchCount, long totalNanos) {
+    }
+
+    /**
+     * @param loadCount  the number of values requested from the DataLoader
+     * @param batchCount the number of times the batch loading function was called
+     * @param batchedKeys the number of keys passed to the batch loading function, summed over all calls
+     */
+    public record DataLoaderStats(long loadCount, long batchCount, long batchedKeys) {
+
+        /**
+         * @return the mean number of keys per call of the batch loading function, or 0 if it was not called
+         */
+        public double meanBatchSize() {
+            return batchCount == 0 ? 0 : (double) batchedKeys / batchCount;
+        }
+    }
+
+    /**
+     * @param field the coordinates of the field, e.g., "Course.chapters"
+     * @return the number of times the field was fetched
+     */
+    public long fetchCount(final String field) {
+        final FieldStats stats = fields.get(field);
+        return stats != null ? stats.fetchCount() : 0;
+    }
+}
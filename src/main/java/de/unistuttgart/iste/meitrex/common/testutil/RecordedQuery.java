@@ -0,0 +1,64 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A statement executed through a data source recorded by {@link QueryRecorder}.
+ *
+ * @param sql           the SQL of the statement
+ * @param parameters    the parameters of a prepared statement, by index starting at 0.
+ *                      Parameters of batched statements are not recorded.
+ * @param batchSize     the number of statements executed together in a batch, 1 if the statement was not batched
+ * @param durationNanos the time it took to execute the statement, in nanoseconds
+ */
+public record RecordedQuery(String sql, List<Object> parameters, int batchSize, long durationNanos) {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w$])-?\\d+(?:\\.\\d+)?(?![\\w$])");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * The kind of statement.
+     */
+    public enum Type {
+        SELECT, INSERT, UPDATE, DELETE, OTHER
+    }
+
+    /**
+     * @return the kind of the statement, derived from its first keyword. Statements starting with {@code WITH}
+     * are assumed to be queries.
+     */
+    public Type type() {
+        final String trimmed = sql.stripLeading();
+        final int end = trimmed.indexOf(' ');
+        final String keyword = (end < 0 ? trimmed : trimmed.substring(0, end)).toUpperCase(Locale.ROOT);
+        return switch (keyword) {
+            case "SELECT", "WITH" -> Type.SELECT;
+            case "INSERT" -> Type.INSERT;
+            case "UPDATE" -> Type.UPDATE;
+            case "DELETE" -> Type.DELETE;
+            default -> Type.OTHER;
+        };
+    }
+
+    /**
+     * Returns the SQL with literals replaced by {@code ?}, lists of parameters collapsed to {@code (?)} and
+     * whitespace normalized. Statements that only differ in their parameter values have the same normalized SQL.
+     *
+     * @return the normalized SQL
+     */
+    public String normalizedSql() {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = PARAMETER_LIST.matcher(normalized).replaceAll("(?)");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+    }
+
+    @Override
+    public String toString() {
+        return parameters.isEmpty() ? sql : sql + " " + parameters;
+    }
+}
@@ -0,0 +1,144 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Data source that records all statements executed through its connections in a {@link QueryRecorder}.
+ * Connections and statements are wrapped in dynamic proxies, {@code unwrap} returns the original objects.
+ */
+class RecordingDataSource extends DelegatingDataSource {
+
+    private final QueryRecorder recorder;
+
+    RecordingDataSource(final DataSource targetDataSource, final QueryRecorder recorder) {
+        super(targetDataSource);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrapConnection(final Connection connection) {
+        return (Connection) Proxy.newProxyInstance(RecordingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(final Object proxy, final Object target, final Method method, final Object[] args)
+            throws Throwable {
+        // proxies are only equal to themselves, like the pooled connections they wrap
+        if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+            return proxy == args[0];
+        }
+        if (method.getName().equals("hashCode") && method.getParameterCount() == 0) {
+            return System.identityHashCode(proxy);
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private ConnectionHandler(final Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final Object result = RecordingDataSource.invoke(proxy, connection, method, args);
+
+            final Class<?> statementInterface = switch (method.getName()) {
+                case "createStatement" -> Statement.class;
+                case "prepareStatement" -> PreparedStatement.class;
+                case "prepareCall" -> CallableStatement.class;
+                default -> null;
+            };
+            if (statementInterface == null) {
+                return result;
+            }
+
+            // the SQL of prepared statements is passed when they are created, not when they are executed
+            final String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            return Proxy.newProxyInstance(RecordingDataSource.class.getClassLoader(),
+                    new Class<?>[]{statementInterface}, new StatementHandler((Statement) result, sql));
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final String preparedSql;
+        private final SortedMap<Integer, Object> parameters = new TreeMap<>();
+        private final List<String> batch = new ArrayList<>();
+
+        private StatementHandler(final Statement statement, final String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+
+            if (name.equals("setNull") && args != null && args[0] instanceof Integer index) {
+                parameters.put(index, null);
+            } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameters.put(index, args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("addBatch")) {
+                batch.add(args != null && args.length == 1 ? (String) args[0] : preparedSql);
+            } else if (name.equals("clearBatch")) {
+                batch.clear();
+            }
+
+            if (!name.startsWith("execute")) {
+                return RecordingDataSource.invoke(proxy, statement, method, args);
+            }
+
+            final long start = System.nanoTime();
+            try {
+                return RecordingDataSource.invoke(proxy, statement, method, args);
+            } finally {
+                record(name, args, System.nanoTime() - start);
+            }
+        }
+
+        private void record(final String methodName, final Object[] args, final long durationNanos) {
+            if (methodName.endsWith("Batch")) {
+                if (!batch.isEmpty()) {
+                    // statements of the same batch are executed in one round trip, so they are recorded together
+                    final String sql = preparedSql != null ? preparedSql : String.join(";\n", batch);
+                    recorder.record(new RecordedQuery(sql, List.of(), batch.size(), durationNanos));
+                    batch.clear();
+                }
+                return;
+            }
+
+            final String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+            if (sql != null) {
+                recorder.record(new RecordedQuery(sql, Collections.unmodifiableList(new ArrayList<>(parameters.values())),
+                        1, durationNanos));
+            }
+        }
+    }
+}
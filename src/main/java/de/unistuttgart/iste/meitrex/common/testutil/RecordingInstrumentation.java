@@ -0,0 +1,109 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import graphql.ExecutionResult;
+import graphql.execution.ExecutionStepInfo;
+import graphql.execution.instrumentation.Instrumentation;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.DataFetcher;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
+import org.dataloader.stats.Statistics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * graphql-java instrumentation that records each execution in a {@link GraphQlExecutionRecorder}.
+ */
+class RecordingInstrumentation implements Instrumentation {
+
+    private final GraphQlExecutionRecorder recorder;
+
+    RecordingInstrumentation(final GraphQlExecutionRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public InstrumentationState createState(final InstrumentationCreateStateParameters parameters) {
+        return new ExecutionState();
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecution(final InstrumentationExecutionParameters parameters,
+                                                                  final InstrumentationState state) {
+        final long start = System.nanoTime();
+        return SimpleInstrumentationContext.whenCompleted((result, throwable) -> {
+            final Map<String, RecordedGraphQlExecution.FieldStats> fields = new TreeMap<>();
+            ((ExecutionState) state).fields.forEach((field, counter) -> fields.put(field, counter.toStats()));
+
+            recorder.record(new RecordedGraphQlExecution(parameters.getOperation(),
+                    parameters.getQuery(),
+                    fields,
+                    getDataLoaderStats(parameters.getExecutionInput().getDataLoaderRegistry()),
+                    System.nanoTime() - start));
+        });
+    }
+
+    @Override
+    public DataFetcher<?> instrumentDataFetcher(final DataFetcher<?> dataFetcher,
+                                                final InstrumentationFieldFetchParameters parameters,
+                                                final InstrumentationState state) {
+        final ExecutionStepInfo stepInfo = parameters.getExecutionStepInfo();
+        final String field = stepInfo.getObjectType().getName() + "." + stepInfo.getFieldDefinition().getName();
+        final FieldCounter counter = ((ExecutionState) state).fields.computeIfAbsent(field, key -> new FieldCounter());
+
+        return environment -> {
+            final long start = System.nanoTime();
+            final Object value = dataFetcher.get(environment);
+            if (value instanceof CompletionStage<?> stage) {
+                // e.g., loaded by a DataLoader, the value is available once the batch has been loaded
+                stage.whenComplete((loaded, throwable) -> counter.add(System.nanoTime() - start));
+            } else {
+                counter.add(System.nanoTime() - start);
+            }
+            return value;
+        };
+    }
+
+    private static Map<String, RecordedGraphQlExecution.DataLoaderStats> getDataLoaderStats(final DataLoaderRegistry registry) {
+        final Map<String, RecordedGraphQlExecution.DataLoaderStats> dataLoaders = new TreeMap<>();
+        if (registry == null) {
+            return dataLoaders;
+        }
+        for (final String name : registry.getKeys()) {
+            final DataLoader<?, ?> dataLoader = registry.getDataLoader(name);
+            final Statistics statistics = dataLoader.getStatistics();
+            if (statistics.getLoadCount() > 0) {
+                dataLoaders.put(name, new RecordedGraphQlExecution.DataLoaderStats(statistics.getLoadCount(),
+                        statistics.getBatchInvokeCount(), statistics.getBatchLoadCount()));
+            }
+        }
+        return dataLoaders;
+    }
+
+    private static final class ExecutionState implements InstrumentationState {
+        private final Map<String, FieldCounter> fields = new ConcurrentHashMap<>();
+    }
+
+    private static final class FieldCounter {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private void add(final long durationNanos) {
+            count.increment();
+            nanos.add(durationNanos);
+        }
+
+        private RecordedGraphQlExecution.FieldStats toStats() {
+            return new RecordedGraphQlExecution.FieldStats(count.sum(), nanos.sum());
+        }
+    }
+}
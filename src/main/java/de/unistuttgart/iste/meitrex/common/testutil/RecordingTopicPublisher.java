@@ -0,0 +1,88 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
+import io.dapr.client.DaprClient;
+import io.dapr.client.domain.PublishEventRequest;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * {@link TopicPublisher} that records the published events in a {@link TopicEventRecorder} instead of sending them
+ * to Dapr, see {@link RecordingTopicPublisherConfiguration}.
+ * <p>
+ * The publisher methods run as implemented and publish through a Dapr client that records the event they build,
+ * i.e., the same event DTO that would be sent to Dapr. The topic of the recorded event is the name of the
+ * publisher method called by the service.
+ * <p>
+ * The recording Dapr client supports all {@code publishEvent} methods of {@link DaprClient}.
+ * Other methods, e.g., for state or bindings, fail with an {@link UnsupportedOperationException}.
+ */
+class RecordingTopicPublisher extends TopicPublisher {
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    RecordingTopicPublisher(final TopicEventRecorder recorder) {
+        super(createRecordingClient(recorder));
+    }
+
+    private static DaprClient createRecordingClient(final TopicEventRecorder recorder) {
+        return (DaprClient) Proxy.newProxyInstance(RecordingTopicPublisher.class.getClassLoader(),
+                new Class<?>[]{DaprClient.class},
+                (proxy, method, arguments) -> switch (method.getName()) {
+                    case "publishEvent" -> {
+                        record(recorder, method, arguments);
+                        yield Mono.empty();
+                    }
+                    case "close" -> null;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == arguments[0];
+                    case "toString" -> "RecordingDaprClient";
+                    default -> throw new UnsupportedOperationException("The recording Dapr client used in tests "
+                                                                       + "only supports publishEvent, but "
+                                                                       + method.getName() + " was called");
+                });
+    }
+
+    /**
+     * Records the event of a call of {@code publishEvent(request)} or
+     * {@code publishEvent(pubsubName, topic, data[, metadata])}.
+     */
+    private static void record(final TopicEventRecorder recorder, final Method method, final Object[] arguments) {
+        final String daprTopic;
+        final Object data;
+        if (arguments != null && arguments.length == 1 && arguments[0] instanceof final PublishEventRequest request) {
+            daprTopic = request.getTopic();
+            data = request.getData();
+        } else if (arguments != null && arguments.length >= 3) {
+            daprTopic = (String) arguments[1];
+            data = arguments[2];
+        } else {
+            throw new UnsupportedOperationException("The recording Dapr client does not support " + method);
+        }
+
+        // the Dapr topic is only used if the publisher method cannot be found
+        final String topic = findPublisherMethod();
+        recorder.record(topic != null ? topic : daprTopic, data);
+    }
+
+    /**
+     * Finds the publisher method called by the service. The walk skips the frames of this class and of the Dapr
+     * client proxy, and then takes the outermost frame of {@link TopicPublisher} before the caller.
+     * Lambdas of {@link TopicPublisher} and JDK frames in between, e.g., of {@code forEach}, are skipped.
+     *
+     * @return the name of the publisher method, or null if it cannot be found
+     */
+    private static String findPublisherMethod() {
+        return STACK_WALKER.walk(frames -> frames
+                .dropWhile(frame -> frame.getDeclaringClass() != TopicPublisher.class)
+                .takeWhile(frame -> frame.getDeclaringClass() == TopicPublisher.class
+                                    || frame.getClassName().startsWith("java."))
+                .filter(frame -> frame.getDeclaringClass() == TopicPublisher.class
+                                 && !frame.getMethodName().startsWith("lambda$"))
+                .reduce((inner, outer) -> outer)
+                .map(StackWalker.StackFrame::getMethodName)
+                .orElse(null));
+    }
+}
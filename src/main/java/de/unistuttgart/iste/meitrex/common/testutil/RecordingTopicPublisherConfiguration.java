@@ -0,0 +1,36 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * This test configuration replaces the {@link TopicPublisher} with one that records all published events
+ * in a {@link TopicEventRecorder}, which can be autowired into tests.
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     &#64;Import(RecordingTopicPublisherConfiguration.class)
+ *     public class Test {
+ * </pre>
+ * Unlike {@link MockTestPublisherConfiguration}, the publisher is not a Mockito mock and does not keep its invocations,
+ * so publishing has no interception overhead and memory use is bounded by the capacity of the recorder, which
+ * defaults to 65536 events and can be set with the property {@code meitrex.topic-recorder.capacity}.
+ * See {@link RecordingTopicPublisher} for how the events are recorded.
+ */
+@TestConfiguration
+public class RecordingTopicPublisherConfiguration {
+
+    @Bean
+    public TopicEventRecorder topicEventRecorder(@Value("${meitrex.topic-recorder.capacity:65536}") final int capacity) {
+        return new TopicEventRecorder(capacity);
+    }
+
+    @Primary
+    @Bean
+    public TopicPublisher getRecordingTopicPublisher(final TopicEventRecorder recorder) {
+        return new RecordingTopicPublisher(recorder);
+    }
+}
@@ -0,0 +1,80 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * The {@link WebSocketClient} shared by all {@link org.springframework.graphql.test.tester.WebSocketGraphQlTester}s
+ * created by {@link GraphQlTesterParameterResolver}.
+ * <p>
+ * There is one client per JVM, with its own event loop and connection provider. Both are disposed when the
+ * JUnit root context closes, i.e., after all tests have run.
+ * The client can be configured with the following system properties:
+ * <ul>
+ *     <li>{@code meitrex.websocket.event-loop-threads}: the number of event loop threads,
+ *     defaults to the number of available processors.</li>
+ *     <li>{@code meitrex.websocket.max-connections}: the maximum number of connections, defaults to 500.</li>
+ * </ul>
+ * Further settings of the underlying {@link HttpClient} can be changed with {@link #customizeHttpClient(UnaryOperator)}
+ * before the first tester is created.
+ */
+public final class SharedWebSocketClient implements ExtensionContext.Store.CloseableResource {
+
+    private static final String NAME = "meitrex-test-websocket";
+    private static final int DEFAULT_MAX_CONNECTIONS = 500;
+
+    private static volatile UnaryOperator<HttpClient> httpClientCustomizer = UnaryOperator.identity();
+
+    private final LoopResources loopResources;
+    private final ConnectionProvider connectionProvider;
+    private final ReactorNettyWebSocketClient client;
+
+    private SharedWebSocketClient() {
+        final int eventLoopThreads = Integer.getInteger("meitrex.websocket.event-loop-threads",
+                Runtime.getRuntime().availableProcessors());
+        final int maxConnections = Integer.getInteger("meitrex.websocket.max-connections", DEFAULT_MAX_CONNECTIONS);
+
+        this.loopResources = LoopResources.create(NAME, eventLoopThreads, true);
+        this.connectionProvider = ConnectionProvider.builder(NAME)
+                .maxConnections(maxConnections)
+                .build();
+
+        final HttpClient httpClient = HttpClient.create(connectionProvider).runOn(loopResources);
+        this.client = new ReactorNettyWebSocketClient(httpClientCustomizer.apply(httpClient));
+    }
+
+    /**
+     * Sets a function that customizes the {@link HttpClient} of the shared client.
+     * Has no effect if the shared client has already been created.
+     *
+     * @param customizer the customizer
+     */
+    public static void customizeHttpClient(final UnaryOperator<HttpClient> customizer) {
+        httpClientCustomizer = customizer;
+    }
+
+    /**
+     * Returns the shared client, creating it on first use.
+     *
+     * @param extensionContext any extension context of the current test run
+     * @return the shared client
+     */
+    static WebSocketClient get(final ExtensionContext extensionContext) {
+        return extensionContext.getRoot()
+                .getStore(ExtensionContext.Namespace.create(SharedWebSocketClient.class))
+                .getOrComputeIfAbsent(SharedWebSocketClient.class, key -> new SharedWebSocketClient(), SharedWebSocketClient.class)
+                .client;
+    }
+
+    @Override
+    public void close() {
+        connectionProvider.disposeLater().block();
+        loopResources.disposeLater().block();
+    }
+}
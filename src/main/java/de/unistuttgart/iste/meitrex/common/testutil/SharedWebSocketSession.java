@@ -0,0 +1,20 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.springframework.graphql.test.tester.WebSocketGraphQlTester;
+
+import java.lang.annotation.*;
+
+/**
+ * Use this annotation on a test class in combination with {@link GraphQlTesterParameterResolver}
+ * to inject the same {@link WebSocketGraphQlTester} into all tests of the class.
+ * All requests and subscriptions of the class are then multiplexed over a single GraphQL over WebSocket session,
+ * which is closed after the last test of the class.
+ * <p>
+ * The current user header is sent when the session is opened, so the user of the
+ * {@link InjectCurrentUserHeader} field at the time of the first request is used for all tests of the class.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface SharedWebSocketSession {
+}
@@ -0,0 +1,129 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.graphql.test.tester.HttpGraphQlTester;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class for JMH benchmark states that need a running Spring application.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;State(Scope.Benchmark)
+ *     public class CourseServiceState extends SpringContextBenchmarkState {
+ *         &#64;Override
+ *         protected Class&lt;?&gt; getApplicationClass() {
+ *             return CourseServiceApplication.class;
+ *         }
+ *     }
+ *
+ *     &#64;Benchmark
+ *     public Object findCourses(CourseServiceState state) {
+ *         return state.getBean(CourseService.class).getAllCourses();
+ *     }
+ * </pre>
+ * The application is started once per trial, i.e., once per fork and benchmark, against a new database of the
+ * {@link MeitrexPostgresSqlContainer}. It runs an embedded server on a random port, so benchmarks can call beans
+ * directly or send GraphQL documents with {@link #getGraphQlTester()}.
+ * JMH is a compile-only dependency of this library, services that run benchmarks must provide it themselves.
+ */
+@State(Scope.Benchmark)
+public abstract class SpringContextBenchmarkState {
+
+    private ConfigurableApplicationContext applicationContext;
+    private HttpGraphQlTester graphQlTester;
+
+    /**
+     * @return the main class of the application, usually annotated with {@code @SpringBootApplication}
+     */
+    protected abstract Class<?> getApplicationClass();
+
+    /**
+     * Override this method to set further properties of the application.
+     * They take precedence over the properties of the application's configuration files.
+     *
+     * @return the properties
+     */
+    protected Map<String, String> getProperties() {
+        return Map.of();
+    }
+
+    /**
+     * Starts the container and the application.
+     */
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        final MeitrexPostgresSqlContainer container = MeitrexPostgresSqlContainer.getInstance();
+        container.start();
+        final String databaseName = container.createDatabase();
+
+        final List<String> arguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + container.getJdbcUrl(databaseName),
+                "--spring.datasource.username=" + container.getUsername(),
+                "--spring.datasource.password=" + container.getPassword(),
+                "--server.port=0"));
+        getProperties().forEach((key, value) -> arguments.add("--" + key + "=" + value));
+
+        applicationContext = new SpringApplication(getApplicationClass()).run(arguments.toArray(String[]::new));
+
+        final String port = applicationContext.getEnvironment().getRequiredProperty("local.server.port");
+        graphQlTester = HttpGraphQlTester.create(WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + port + GraphQlTesterParameterResolver.getHttpGraphQlRoute())
+                .build());
+    }
+
+    /**
+     * Stops the application. The container keeps running for the next trial.
+     */
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        if (applicationContext != null) {
+            applicationContext.close();
+        }
+    }
+
+    /**
+     * @return the context of the running application
+     */
+    public ConfigurableApplicationContext getApplicationContext() {
+        return applicationContext;
+    }
+
+    /**
+     * @param beanClass the class of the bean
+     * @param <T>       the type of the bean
+     * @return the bean of the given class
+     */
+    public <T> T getBean(final Class<T> beanClass) {
+        return applicationContext.getBean(beanClass);
+    }
+
+    /**
+     * @return a tester that sends requests to the GraphQL endpoint of the running application, without user
+     */
+    public HttpGraphQlTester getGraphQlTester() {
+        return graphQlTester;
+    }
+
+    /**
+     * Returns a tester that sends requests as the given user. Create the tester in a setup method rather than
+     * in the benchmark method, as creating a tester is expensive.
+     *
+     * @param user the user
+     * @return a tester that sends requests to the GraphQL endpoint of the running application as the given user
+     */
+    public HttpGraphQlTester getGraphQlTester(final LoggedInUser user) {
+        return (HttpGraphQlTester) HeaderUtils.addCurrentUserHeader(graphQlTester, user);
+    }
+}
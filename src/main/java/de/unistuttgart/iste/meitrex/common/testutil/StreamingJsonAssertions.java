@@ -0,0 +1,316 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assertions on the elements of very large JSON documents, like GraphQL responses with hundreds of thousands of items.
+ * <p>
+ * Usage:
+ * <pre>
+ *     InputStream response = StreamingJsonAssertions.executeGraphQl(endpoint, query, Map.of(), user);
+ *     long count = StreamingJsonAssertions.assertEach(response, "data.courses.elements", CourseDto.class,
+ *             hasFeature("title", CourseDto::getTitle, not(emptyString())));
+ *     assertThat(count, is(100_000L));
+ * </pre>
+ * Unlike deserializing the response and matching it with {@link MeitrexMatchers#each}, the document is read with a
+ * streaming parser. Only the current element is held in memory, so memory use does not depend on the size of the
+ * document, and each element is checked as soon as it has been read. The first element that does not match fails
+ * the assertion, with its index and path in the message, without reading the rest of the document.
+ * <p>
+ * Paths consist of field names separated by dots. Array elements are selected with an index, e.g.,
+ * {@code data.courses.elements[0].chapters}, or all elements with {@code [*]}, e.g.,
+ * {@code data.courses.elements[*].chapters.elements}. The path must end at an array, whose elements are checked.
+ * <p>
+ * If the document has a top-level field {@code errors} with at least one entry, as GraphQL responses with errors do,
+ * the assertion fails with the errors.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class StreamingJsonAssertions {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+
+    /**
+     * Checks each element of the array at the path against the matcher. The stream is closed afterwards.
+     *
+     * @param json    the JSON document
+     * @param path    the path of the array
+     * @param matcher the matcher for each element
+     * @return the number of elements checked
+     * @throws AssertionError if an element does not match, the path does not exist or the document has errors
+     */
+    public static long assertEach(final InputStream json, final String path, final Matcher<? super JsonNode> matcher) {
+        return walk(json, path, (parser, elementPath) -> {
+            final JsonNode element = parser.readValueAsTree();
+            check(element, elementPath, matcher);
+        });
+    }
+
+    /**
+     * Like {@link #assertEach(InputStream, String, Matcher)}, but each element is deserialized to the given type
+     * before it is matched. Fields of the elements that the type does not have are ignored.
+     *
+     * @param json    the JSON document
+     * @param path    the path of the array
+     * @param type    the type of the elements
+     * @param matcher the matcher for each element
+     * @param <T>     the type of the elements
+     * @return the number of elements checked
+     * @throws AssertionError if an element does not match, the path does not exist or the document has errors
+     */
+    public static <T> long assertEach(final InputStream json,
+                                      final String path,
+                                      final Class<T> type,
+                                      final Matcher<? super T> matcher) {
+        return walk(json, path, (parser, elementPath) -> {
+            final T element = OBJECT_MAPPER.readValue(parser, type);
+            check(element, elementPath, matcher);
+        });
+    }
+
+    /**
+     * Counts the elements of the array at the path, without keeping them in memory. The stream is closed afterwards.
+     *
+     * @param json the JSON document
+     * @param path the path of the array
+     * @return the number of elements
+     * @throws AssertionError if the path does not exist or the document has errors
+     */
+    public static long count(final InputStream json, final String path) {
+        return walk(json, path, (parser, elementPath) -> parser.skipChildren());
+    }
+
+    /**
+     * Sends a GraphQL request to a running server and returns the response body as a stream, without buffering it.
+     *
+     * @param endpoint  the GraphQL endpoint, e.g., {@code http://localhost:8080/graphql}
+     * @param document  the GraphQL document
+     * @param variables the variables of the request
+     * @param user      the user to send the request as, or null to send it without user
+     * @return the response body
+     */
+    public static InputStream executeGraphQl(final URI endpoint,
+                                             final String document,
+                                             final Map<String, Object> variables,
+                                             final LoggedInUser user) {
+        try {
+            final HttpRequest.Builder request = HttpRequest.newBuilder(endpoint)
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "application/graphql-response+json, application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(OBJECT_MAPPER.writeValueAsBytes(
+                            Map.of("query", document, "variables", variables != null ? variables : Map.of()))));
+            if (user != null) {
+                request.header(HeaderUtils.CURRENT_USER_HEADER, HeaderUtils.getCurrentUserHeaderValue(user));
+            }
+
+            final HttpResponse<InputStream> response = HTTP_CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                try (InputStream body = response.body()) {
+                    throw new AssertionError("GraphQL request failed with status %d: %s"
+                            .formatted(response.statusCode(), new String(body.readAllBytes(), StandardCharsets.UTF_8)));
+                }
+            }
+            return response.body();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("GraphQL request to " + endpoint + " failed", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending GraphQL request", e);
+        }
+    }
+
+    private static <T> void check(final T element, final String elementPath, final Matcher<? super T> matcher) {
+        if (!matcher.matches(element)) {
+            final Description description = new StringDescription()
+                    .appendText("Element ").appendText(elementPath).appendText(" does not match")
+                    .appendText(System.lineSeparator()).appendText("Expected: ").appendDescriptionOf(matcher)
+                    .appendText(System.lineSeparator()).appendText("     but: ");
+            matcher.describeMismatch(element, description);
+            throw new AssertionError(description.toString());
+        }
+    }
+
+    private static long walk(final InputStream json, final String path, final ElementVisitor visitor) {
+        final List<Segment> segments = parsePath(path);
+        try (JsonParser parser = OBJECT_MAPPER.createParser(json)) {
+            if (parser.nextToken() == null) {
+                throw new AssertionError("The document is empty");
+            }
+            final long[] count = {0};
+            new Walker(parser, segments, (elementParser, elementPath) -> {
+                visitor.visit(elementParser, elementPath);
+                count[0]++;
+            }).walk(0, "");
+            return count[0];
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not read JSON document", e);
+        }
+    }
+
+    private static List<Segment> parsePath(final String path) {
+        final List<Segment> segments = new ArrayList<>();
+        for (final String part : path.split("\\.")) {
+            final int bracket = part.indexOf('[');
+            final String name = bracket < 0 ? part : part.substring(0, bracket);
+            if (!name.isEmpty()) {
+                segments.add(new Segment(name, -1));
+            }
+            if (bracket < 0) {
+                continue;
+            }
+
+            for (final String selector : part.substring(bracket + 1, part.length() - 1).split("]\\[")) {
+                try {
+                    segments.add(new Segment(null, selector.equals("*") ? Segment.ALL : Integer.parseInt(selector)));
+                } catch (final NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid array selector [" + selector + "] in path " + path, e);
+                }
+            }
+        }
+        return segments;
+    }
+
+    @FunctionalInterface
+    private interface ElementVisitor {
+        /**
+         * @param parser      the parser, positioned at the first token of the element. After the call, it must be
+         *                    positioned at the last token of the element.
+         * @param elementPath the path of the element
+         */
+        void visit(JsonParser parser, String elementPath) throws IOException;
+    }
+
+    /**
+     * A part of a path, either a field name or an array selector.
+     *
+     * @param field the field name, or null for an array selector
+     * @param index the index of the selected element, or {@link #ALL}
+     */
+    private record Segment(String field, int index) {
+        private static final int ALL = -1;
+    }
+
+    private record Walker(JsonParser parser, List<Segment> segments, ElementVisitor visitor) {
+
+        /**
+         * Walks the value at the current token along the segments starting at {@code position}.
+         * Afterwards, the parser is positioned at the last token of the value.
+         */
+        private void walk(final int position, final String currentPath) throws IOException {
+            if (position == segments.size()) {
+                expect(JsonToken.START_ARRAY, currentPath);
+                visitAll(position, currentPath);
+                return;
+            }
+
+            final Segment segment = segments.get(position);
+            if (segment.field() != null) {
+                walkField(position, segment.field(), currentPath);
+            } else if (segment.index() == Segment.ALL) {
+                expect(JsonToken.START_ARRAY, currentPath);
+                visitAll(position + 1, currentPath);
+            } else {
+                expect(JsonToken.START_ARRAY, currentPath);
+                walkElement(position, segment.index(), currentPath);
+            }
+        }
+
+        private void walkField(final int position, final String field, final String currentPath) throws IOException {
+            expect(JsonToken.START_OBJECT, currentPath);
+            final boolean root = parser.getParsingContext().getParent().inRoot();
+            final String fieldPath = currentPath.isEmpty() ? field : currentPath + "." + field;
+
+            boolean found = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.currentName();
+                parser.nextToken();
+                if (!found && name.equals(field)) {
+                    found = true;
+                    walk(position + 1, fieldPath);
+                } else if (root && name.equals("errors")) {
+                    checkErrors();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (!found) {
+                throw new AssertionError("No field at path " + fieldPath);
+            }
+        }
+
+        private void walkElement(final int position, final int index, final String currentPath) throws IOException {
+            final String elementPath = currentPath + "[" + index + "]";
+            int current = 0;
+            boolean found = false;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (current++ == index) {
+                    found = true;
+                    walk(position + 1, elementPath);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (!found) {
+                throw new AssertionError("No element at path " + elementPath + ", the array has " + current + " element(s)");
+            }
+        }
+
+        /**
+         * Walks each element of the array at the current token along the segments starting at {@code position},
+         * or visits each element if there are no further segments.
+         */
+        private void visitAll(final int position, final String currentPath) throws IOException {
+            final boolean last = position == segments.size();
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                final String elementPath = currentPath + "[" + index++ + "]";
+                if (last) {
+                    visitor.visit(parser, elementPath);
+                } else {
+                    walk(position, elementPath);
+                }
+            }
+        }
+
+        private void checkErrors() throws IOException {
+            final JsonNode errors = parser.readValueAsTree();
+            if (errors != null && errors.isArray() && !errors.isEmpty()) {
+                throw new AssertionError("The response has errors: " + errors.toPrettyString());
+            }
+        }
+
+        private void expect(final JsonToken expected, final String currentPath) {
+            final JsonToken actual = parser.currentToken();
+            if (actual != expected) {
+                throw new AssertionError("Expected %s at path %s, but got %s"
+                        .formatted(expected == JsonToken.START_ARRAY ? "an array" : "an object",
+                                currentPath.isEmpty() ? "$" : currentPath, actual));
+            }
+        }
+    }
+}
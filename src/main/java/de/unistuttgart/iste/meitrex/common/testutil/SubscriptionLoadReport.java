@@ -0,0 +1,42 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.util.List;
+
+/**
+ * Result of a subscription load test run by {@link GraphQlSubscriptionLoadTester}.
+ *
+ * @param subscriptions   the number of subscriptions
+ * @param connections     the number of WebSocket connections the subscriptions were spread over
+ * @param expectedEvents  the number of events the subscriptions should have received together
+ * @param receivedEvents  the number of events received from the server
+ * @param missingEvents   the number of expected events that were never received, e.g., because the server
+ *                        dropped them for slow clients or the run timed out
+ * @param slowConnections the number of connections that read their messages with a delay
+ * @param errors          the number of responses with errors and of subscriptions that ended with an error
+ * @param durationMillis  the time from the first trigger until the last event was received
+ * @param eventsPerSecond the number of received events per second
+ * @param latency         the time from triggering an event until it was received
+ * @param errorSamples    the messages of the first errors
+ */
+public record SubscriptionLoadReport(int subscriptions,
+                                     int connections,
+                                     long expectedEvents,
+                                     long receivedEvents,
+                                     long missingEvents,
+                                     int slowConnections,
+                                     long errors,
+                                     double durationMillis,
+                                     double eventsPerSecond,
+                                     LoadTestReport.Latency latency,
+                                     List<String> errorSamples) {
+
+    /**
+     * @return a one-line summary of the report for logging
+     */
+    public String summary() {
+        return ("%d subscriptions on %d connections (%d slow): %d of %d events received, %d missing, %d errors, "
+                + "%.1f events/s, p50 %.2f ms, p99 %.2f ms")
+                .formatted(subscriptions, connections, slowConnections, receivedEvents, expectedEvents, missingEvents,
+                        errors, eventsPerSecond, latency.p50(), latency.p99());
+    }
+}
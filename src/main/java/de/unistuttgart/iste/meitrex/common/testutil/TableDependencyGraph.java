@@ -0,0 +1,181 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Foreign key graph of the tables of a database, read once from the JDBC metadata.
+ * <p>
+ * Graphs are cached for the whole JVM by JDBC URL and user name, so test classes that use the same
+ * database share the metadata round trips.
+ * The graph provides a deterministic deletion order: tables are grouped into strongly connected
+ * components (tables that reference each other in a cycle), and the groups are ordered so that
+ * referencing tables come before the tables they reference.
+ */
+final class TableDependencyGraph {
+
+    private static final String POSTGRESQL_PRODUCT_NAME = "PostgreSQL";
+
+    private static final Map<String, TableDependencyGraph> CACHE = new ConcurrentHashMap<>();
+
+    private final boolean postgres;
+    private final SortedMap<String, SortedSet<String>> referencedTables;
+    private final List<List<String>> deletionOrder;
+    private final List<String> tablesInDeletionOrder;
+
+    private TableDependencyGraph(final boolean postgres, final SortedMap<String, SortedSet<String>> referencedTables) {
+        this.postgres = postgres;
+        this.referencedTables = referencedTables;
+        this.deletionOrder = computeDeletionOrder(referencedTables);
+        this.tablesInDeletionOrder = deletionOrder.stream().flatMap(List::stream).toList();
+    }
+
+    /**
+     * Returns the graph of the database the data source connects to.
+     * The metadata is only queried if no graph for this database has been loaded yet.
+     *
+     * @param dataSource the data source
+     * @return the graph
+     */
+    static TableDependencyGraph of(final DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            final DatabaseMetaData metaData = connection.getMetaData();
+            final String key = metaData.getURL() + "|" + metaData.getUserName();
+
+            final TableDependencyGraph cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+
+            final TableDependencyGraph graph = load(metaData);
+            final TableDependencyGraph existing = CACHE.putIfAbsent(key, graph);
+            return existing != null ? existing : graph;
+        }
+    }
+
+    /**
+     * Removes all cached graphs. Use this if the schema of a database changes during the test run.
+     */
+    static void clearCache() {
+        CACHE.clear();
+    }
+
+    boolean isPostgres() {
+        return postgres;
+    }
+
+    /**
+     * @return all tables, ordered so that referencing tables come before the tables they reference
+     */
+    List<String> getTablesInDeletionOrder() {
+        return tablesInDeletionOrder;
+    }
+
+    /**
+     * @return the strongly connected groups of tables in deletion order.
+     * A group with more than one table contains tables that reference each other in a cycle.
+     */
+    List<List<String>> getDeletionGroups() {
+        return deletionOrder;
+    }
+
+    /**
+     * @param table a table of the graph
+     * @return the tables that the given table references with foreign keys
+     */
+    Set<String> getReferencedTables(final String table) {
+        return Collections.unmodifiableSet(referencedTables.getOrDefault(table, Collections.emptySortedSet()));
+    }
+
+    private static TableDependencyGraph load(final DatabaseMetaData metaData) throws SQLException {
+        final Map<String, String> schemaByTable = new HashMap<>();
+        try (ResultSet resultTables = metaData.getTables(null, null, "%", new String[]{"TABLE"})) {
+            while (resultTables.next()) {
+                final String tableName = resultTables.getString("TABLE_NAME");
+                if (!DirtyTableTracker.TRACKING_TABLE.equalsIgnoreCase(tableName)) {
+                    schemaByTable.put(tableName, resultTables.getString("TABLE_SCHEM"));
+                }
+            }
+        }
+
+        final SortedMap<String, SortedSet<String>> referencedTables = new TreeMap<>();
+        for (final Map.Entry<String, String> table : schemaByTable.entrySet()) {
+            final SortedSet<String> references = new TreeSet<>();
+            try (ResultSet importedKeys = metaData.getImportedKeys(null, table.getValue(), table.getKey())) {
+                while (importedKeys.next()) {
+                    final String referencedTable = importedKeys.getString("PKTABLE_NAME");
+                    if (schemaByTable.containsKey(referencedTable)) {
+                        references.add(referencedTable);
+                    }
+                }
+            }
+            referencedTables.put(table.getKey(), references);
+        }
+
+        return new TableDependencyGraph(POSTGRESQL_PRODUCT_NAME.equals(metaData.getDatabaseProductName()),
+                referencedTables);
+    }
+
+    /**
+     * Computes the strongly connected components with Tarjan's algorithm.
+     * Tarjan's algorithm emits a component only after all components reachable from it, i.e., referenced
+     * tables are emitted before referencing tables, so the result is reversed to get the deletion order.
+     */
+    private static List<List<String>> computeDeletionOrder(final SortedMap<String, SortedSet<String>> graph) {
+        final TarjanState state = new TarjanState(graph);
+        for (final String table : graph.keySet()) {
+            if (!state.index.containsKey(table)) {
+                state.visit(table);
+            }
+        }
+        final List<List<String>> result = new ArrayList<>(state.components);
+        Collections.reverse(result);
+        return Collections.unmodifiableList(result);
+    }
+
+    private static final class TarjanState {
+        private final SortedMap<String, SortedSet<String>> graph;
+        private final Map<String, Integer> index = new HashMap<>();
+        private final Map<String, Integer> lowLink = new HashMap<>();
+        private final Deque<String> stack = new ArrayDeque<>();
+        private final Set<String> onStack = new HashSet<>();
+        private final List<List<String>> components = new ArrayList<>();
+
+        private TarjanState(final SortedMap<String, SortedSet<String>> graph) {
+            this.graph = graph;
+        }
+
+        private void visit(final String table) {
+            index.put(table, index.size());
+            lowLink.put(table, index.get(table));
+            stack.push(table);
+            onStack.add(table);
+
+            for (final String referenced : graph.getOrDefault(table, Collections.emptySortedSet())) {
+                if (!index.containsKey(referenced)) {
+                    visit(referenced);
+                    lowLink.put(table, Math.min(lowLink.get(table), lowLink.get(referenced)));
+                } else if (onStack.contains(referenced)) {
+                    lowLink.put(table, Math.min(lowLink.get(table), index.get(referenced)));
+                }
+            }
+
+            if (lowLink.get(table).equals(index.get(table))) {
+                final List<String> component = new ArrayList<>();
+                String member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    component.add(member);
+                } while (!member.equals(table));
+                Collections.sort(component);
+                components.add(Collections.unmodifiableList(component));
+            }
+        }
+    }
+}
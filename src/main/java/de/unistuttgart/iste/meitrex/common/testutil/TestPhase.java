@@ -0,0 +1,28 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+/**
+ * The phases of a test measured by {@link TestPhaseTimer}.
+ */
+public enum TestPhase {
+    /**
+     * Creating the testers injected by {@link GraphQlTesterParameterResolver}.
+     */
+    TESTER_CREATION,
+    /**
+     * Loading the datasets of {@link Dataset} annotations.
+     */
+    DATASET_LOADING,
+    /**
+     * The test method itself.
+     */
+    TEST_BODY,
+    /**
+     * Resetting the database with {@link ClearDatabase}.
+     */
+    DATABASE_RESET,
+    /**
+     * Everything else from the first before-each callback to the last after-each callback,
+     * e.g., other extensions and {@code @BeforeEach} methods.
+     */
+    OTHER
+}
@@ -0,0 +1,128 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.junit.jupiter.api.extension.*;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.lang.reflect.Method;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * JUnit test extension that measures where the time of a test run goes.
+ * <p>
+ * For each test class, it measures how long it takes to get the Spring application context and whether the
+ * context was loaded or came from Spring's context cache. For each test, it measures the {@link TestPhase}s.
+ * The timings of the whole run are written to a JSON and an HTML report, see {@link TestTimingCollector}.
+ * <p>
+ * The extension must be registered after {@link MeitrexPostgresSqlContainer}, as the context can only be loaded
+ * once the container runs, and before {@link ClearDatabase}, so that the time of a test includes the other
+ * extensions. Other extensions of this library report their phases with {@link #addTime}. <br>
+ * It can be disabled with the system property {@code meitrex.test-timing.enabled=false}. <br>
+ * This extension is automatically used by {@link GraphQlApiTest}.
+ */
+public class TestPhaseTimer implements BeforeAllCallback, BeforeEachCallback, AfterEachCallback, InvocationInterceptor {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(TestPhaseTimer.class);
+    private static final String TIMES_KEY = "times";
+
+    /**
+     * Adds time to a phase of the current test. Has no effect if the test is not timed by this extension.
+     *
+     * @param context the extension context of the test
+     * @param phase   the phase
+     * @param nanos   the time in nanoseconds
+     */
+    static void addTime(final ExtensionContext context, final TestPhase phase, final long nanos) {
+        final PhaseTimes times = context.getStore(NAMESPACE).get(TIMES_KEY, PhaseTimes.class);
+        if (times != null) {
+            times.add(phase, nanos);
+        }
+    }
+
+    @Override
+    public void beforeAll(final ExtensionContext context) {
+        if (!isEnabled()) {
+            return;
+        }
+        final TestTimingCollector collector = TestTimingCollector.get(context);
+        collector.recordContainerStartup(MeitrexPostgresSqlContainer.getInstance().getStartupDuration());
+
+        // the first extension to get the context loads it, so this is the context load time on a cache miss
+        final long start = System.nanoTime();
+        final ApplicationContext applicationContext = SpringExtension.getApplicationContext(context);
+        collector.recordContext(context.getRequiredTestClass().getName(), applicationContext, System.nanoTime() - start);
+    }
+
+    @Override
+    public void beforeEach(final ExtensionContext context) {
+        if (isEnabled()) {
+            context.getStore(NAMESPACE).put(TIMES_KEY, new PhaseTimes(System.nanoTime()));
+        }
+    }
+
+    @Override
+    public void interceptTestMethod(final Invocation<Void> invocation,
+                                    final ReflectiveInvocationContext<Method> invocationContext,
+                                    final ExtensionContext extensionContext) throws Throwable {
+        timeTestBody(invocation, extensionContext);
+    }
+
+    @Override
+    public void interceptTestTemplateMethod(final Invocation<Void> invocation,
+                                            final ReflectiveInvocationContext<Method> invocationContext,
+                                            final ExtensionContext extensionContext) throws Throwable {
+        timeTestBody(invocation, extensionContext);
+    }
+
+    @Override
+    public void afterEach(final ExtensionContext context) {
+        final PhaseTimes times = context.getStore(NAMESPACE).remove(TIMES_KEY, PhaseTimes.class);
+        if (times == null) {
+            return;
+        }
+
+        final long totalNanos = System.nanoTime() - times.start;
+        final Map<TestPhase, Long> phases = times.finish(totalNanos);
+        TestTimingCollector.get(context).recordTest(context.getRequiredTestClass().getName(),
+                context.getRequiredTestClass().getSimpleName() + "." + context.getDisplayName(),
+                totalNanos, phases);
+    }
+
+    private static void timeTestBody(final Invocation<Void> invocation, final ExtensionContext extensionContext)
+            throws Throwable {
+        final long start = System.nanoTime();
+        try {
+            invocation.proceed();
+        } finally {
+            addTime(extensionContext, TestPhase.TEST_BODY, System.nanoTime() - start);
+        }
+    }
+
+    private static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("meitrex.test-timing.enabled", "true"));
+    }
+
+    private static final class PhaseTimes {
+
+        private final long start;
+        private final EnumMap<TestPhase, Long> phases = new EnumMap<>(TestPhase.class);
+
+        private PhaseTimes(final long start) {
+            this.start = start;
+        }
+
+        private synchronized void add(final TestPhase phase, final long nanos) {
+            phases.merge(phase, nanos, Long::sum);
+        }
+
+        /**
+         * @return the measured phases and the remaining time as {@link TestPhase#OTHER}
+         */
+        private synchronized Map<TestPhase, Long> finish(final long totalNanos) {
+            final long measured = phases.values().stream().mapToLong(Long::longValue).sum();
+            phases.put(TestPhase.OTHER, Math.max(totalNanos - measured, 0));
+            return phases;
+        }
+    }
+}
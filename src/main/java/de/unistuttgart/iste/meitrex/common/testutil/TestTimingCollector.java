@@ -0,0 +1,195 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.context.ApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Collects the timings of {@link TestPhaseTimer} for the whole test run and writes the
+ * {@link TestTimingReport} as JSON and HTML when the JUnit root context closes.
+ * <p>
+ * The reports are written to {@code build/reports/test-timing}, or the directory of the system property
+ * {@code meitrex.test-timing.report-dir}. Each JVM writes its own files, named after its process id,
+ * as Gradle may run tests in several JVMs.
+ */
+@Slf4j
+final class TestTimingCollector implements ExtensionContext.Store.CloseableResource {
+
+    private static final int REPORTED_ENTRIES = 25;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    // contexts are only referenced weakly, so that evicted contexts can be garbage collected
+    private final Set<ApplicationContext> loadedContexts = Collections.newSetFromMap(new WeakHashMap<>());
+    private final List<TestTimingReport.ContextLoad> contextLoads = new ArrayList<>();
+    private final Map<String, ClassRecord> classes = new HashMap<>();
+    private final List<TestTimingReport.TestTiming> tests = new ArrayList<>();
+    private final EnumMap<TestPhase, Long> phaseTotals = new EnumMap<>(TestPhase.class);
+    private Duration containerStartup;
+    private int contextCacheHits = 0;
+
+    static TestTimingCollector get(final ExtensionContext extensionContext) {
+        return extensionContext.getRoot()
+                .getStore(ExtensionContext.Namespace.create(TestTimingCollector.class))
+                .getOrComputeIfAbsent(TestTimingCollector.class, key -> new TestTimingCollector(), TestTimingCollector.class);
+    }
+
+    synchronized void recordContainerStartup(final Duration startupDuration) {
+        if (startupDuration != null) {
+            this.containerStartup = startupDuration;
+        }
+    }
+
+    /**
+     * Records the time it took to get the application context of a test class.
+     * The context was loaded if it has not been seen before, otherwise it came from Spring's context cache.
+     */
+    synchronized void recordContext(final String testClass, final ApplicationContext context, final long nanos) {
+        if (loadedContexts.add(context)) {
+            contextLoads.add(new TestTimingReport.ContextLoad(testClass, nanos / NANOS_PER_MILLI));
+        } else {
+            contextCacheHits++;
+        }
+        classes.computeIfAbsent(testClass, key -> new ClassRecord()).contextNanos += nanos;
+    }
+
+    synchronized void recordTest(final String testClass,
+                                 final String test,
+                                 final long totalNanos,
+                                 final Map<TestPhase, Long> phases) {
+        final Map<TestPhase, Double> phaseMillis = new EnumMap<>(TestPhase.class);
+        phases.forEach((phase, nanos) -> {
+            phaseMillis.put(phase, nanos / NANOS_PER_MILLI);
+            phaseTotals.merge(phase, nanos, Long::sum);
+        });
+        tests.add(new TestTimingReport.TestTiming(test, totalNanos / NANOS_PER_MILLI, phaseMillis));
+
+        final ClassRecord classRecord = classes.computeIfAbsent(testClass, key -> new ClassRecord());
+        classRecord.testNanos += totalNanos;
+        classRecord.tests++;
+    }
+
+    synchronized TestTimingReport createReport() {
+        final Map<TestPhase, Double> phases = new EnumMap<>(TestPhase.class);
+        phaseTotals.forEach((phase, nanos) -> phases.put(phase, nanos / NANOS_PER_MILLI));
+
+        final List<TestTimingReport.ClassTiming> classTimings = classes.entrySet().stream()
+                .map(entry -> new TestTimingReport.ClassTiming(entry.getKey(),
+                        (entry.getValue().contextNanos + entry.getValue().testNanos) / NANOS_PER_MILLI,
+                        entry.getValue().contextNanos / NANOS_PER_MILLI,
+                        entry.getValue().tests))
+                .sorted(Comparator.comparingDouble(TestTimingReport.ClassTiming::totalMillis).reversed())
+                .toList();
+
+        return new TestTimingReport(
+                classTimings.stream().mapToDouble(TestTimingReport.ClassTiming::totalMillis).sum(),
+                containerStartup != null ? containerStartup.toNanos() / NANOS_PER_MILLI : null,
+                phases,
+                new TestTimingReport.ContextCache(contextCacheHits, contextLoads.size(),
+                        contextLoads.stream()
+                                .sorted(Comparator.comparingDouble(TestTimingReport.ContextLoad::millis).reversed())
+                                .toList()),
+                tests.stream()
+                        .sorted(Comparator.comparingDouble(TestTimingReport.TestTiming::totalMillis).reversed())
+                        .limit(REPORTED_ENTRIES)
+                        .toList(),
+                classTimings.stream().limit(REPORTED_ENTRIES).toList());
+    }
+
+    @Override
+    public void close() throws IOException {
+        final TestTimingReport report = createReport();
+
+        final Path directory = Path.of(System.getProperty("meitrex.test-timing.report-dir", "build/reports/test-timing"));
+        final String fileName = "test-timing-" + ProcessHandle.current().pid();
+        Files.createDirectories(directory);
+        Files.writeString(directory.resolve(fileName + ".json"), OBJECT_MAPPER.writeValueAsString(report));
+        Files.writeString(directory.resolve(fileName + ".html"), toHtml(report));
+
+        log.info("Tests took {} ms, {} context(s) loaded, {} context cache hit(s). Report: {}",
+                Math.round(report.totalMillis()), report.contextCache().misses(), report.contextCache().hits(),
+                directory.resolve(fileName + ".html").toAbsolutePath());
+    }
+
+    private static String toHtml(final TestTimingReport report) {
+        final StringBuilder html = new StringBuilder("""
+                <!DOCTYPE html>
+                <html><head><meta charset="utf-8"><title>Test timing</title>
+                <style>body{font-family:sans-serif}table{border-collapse:collapse;margin-bottom:2em}
+                td,th{border:1px solid #ccc;padding:4px 8px;text-align:right}td:first-child{text-align:left}</style>
+                </head><body>
+                <h1>Test timing</h1>
+                """);
+
+        html.append("<p>Total: ").append(formatMillis(report.totalMillis())).append(" ms");
+        if (report.containerStartupMillis() != null) {
+            html.append(", container startup: ").append(formatMillis(report.containerStartupMillis())).append(" ms");
+        }
+        html.append(", contexts loaded: ").append(report.contextCache().misses())
+                .append(", context cache hits: ").append(report.contextCache().hits()).append("</p>\n");
+
+        html.append("<h2>Phases</h2>\n<table><tr><th>Phase</th><th>ms</th></tr>\n");
+        report.phases().forEach((phase, millis) -> appendRow(html, phase.name(), formatMillis(millis)));
+        html.append("</table>\n");
+
+        html.append("<h2>Context loads</h2>\n<table><tr><th>Test class</th><th>ms</th></tr>\n");
+        report.contextCache().loads().forEach(load -> appendRow(html, load.testClass(), formatMillis(load.millis())));
+        html.append("</table>\n");
+
+        html.append("<h2>Slowest test classes</h2>\n")
+                .append("<table><tr><th>Test class</th><th>Total ms</th><th>Context ms</th><th>Tests</th></tr>\n");
+        report.slowestClasses().forEach(classTiming -> appendRow(html, classTiming.testClass(),
+                formatMillis(classTiming.totalMillis()), formatMillis(classTiming.contextLoadMillis()),
+                String.valueOf(classTiming.tests())));
+        html.append("</table>\n");
+
+        html.append("<h2>Slowest tests</h2>\n<table><tr><th>Test</th><th>Total ms</th>");
+        for (final TestPhase phase : TestPhase.values()) {
+            html.append("<th>").append(phase.name()).append(" ms</th>");
+        }
+        html.append("</tr>\n");
+        for (final TestTimingReport.TestTiming test : report.slowestTests()) {
+            final List<String> cells = new ArrayList<>();
+            cells.add(test.test());
+            cells.add(formatMillis(test.totalMillis()));
+            for (final TestPhase phase : TestPhase.values()) {
+                cells.add(formatMillis(test.phases().getOrDefault(phase, 0.0)));
+            }
+            appendRow(html, cells.toArray(String[]::new));
+        }
+        html.append("</table>\n</body></html>\n");
+        return html.toString();
+    }
+
+    private static void appendRow(final StringBuilder html, final String... cells) {
+        html.append("<tr>");
+        for (final String cell : cells) {
+            html.append("<td>").append(escapeHtml(cell)).append("</td>");
+        }
+        html.append("</tr>\n");
+    }
+
+    private static String formatMillis(final double millis) {
+        return String.format(Locale.ROOT, "%.1f", millis);
+    }
+
+    private static String escapeHtml(final String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static final class ClassRecord {
+        private long contextNanos;
+        private long testNanos;
+        private int tests;
+    }
+}
@@ -0,0 +1,55 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timings of a test run collected by {@link TestPhaseTimer}. All times are in milliseconds.
+ *
+ * @param totalMillis            the sum of the times of all tests and context loads
+ * @param containerStartupMillis the time it took to start the {@link MeitrexPostgresSqlContainer},
+ *                               or null if it was not started by this JVM
+ * @param phases                 the sum of each phase over all tests
+ * @param contextCache           the Spring application context loads and cache hits
+ * @param slowestTests           the slowest tests, slowest first
+ * @param slowestClasses         the slowest test classes, slowest first
+ */
+public record TestTimingReport(double totalMillis,
+                               Double containerStartupMillis,
+                               Map<TestPhase, Double> phases,
+                               ContextCache contextCache,
+                               List<TestTiming> slowestTests,
+                               List<ClassTiming> slowestClasses) {
+
+    /**
+     * @param hits   the number of test classes that used an already loaded context
+     * @param misses the number of test classes that had to load a context
+     * @param loads  the context loads, slowest first
+     */
+    public record ContextCache(int hits, int misses, List<ContextLoad> loads) {
+    }
+
+    /**
+     * @param testClass the test class that loaded the context
+     * @param millis    the time it took to load the context
+     */
+    public record ContextLoad(String testClass, double millis) {
+    }
+
+    /**
+     * @param test        the name of the test
+     * @param totalMillis the time from the first before-each callback to the last after-each callback
+     * @param phases      the time of each phase
+     */
+    public record TestTiming(String test, double totalMillis, Map<TestPhase, Double> phases) {
+    }
+
+    /**
+     * @param testClass         the test class
+     * @param totalMillis       the sum of the context load and the times of all tests of the class
+     * @param contextLoadMillis the time it took to get the application context, close to 0 on a cache hit
+     * @param tests             the number of tests of the class
+     */
+    public record ClassTiming(String testClass, double totalMillis, double contextLoadMillis, int tests) {
+    }
+}
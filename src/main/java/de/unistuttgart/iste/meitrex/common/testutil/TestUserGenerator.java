@@ -0,0 +1,260 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import de.unistuttgart.iste.meitrex.common.user_handling.LoggedInUser;
+import lombok.Builder;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic generator for large numbers of {@link LoggedInUser}s with course memberships, e.g., for load tests.
+ * <p>
+ * Usage:
+ * <pre>
+ *     TestUserGenerator generator = TestUsers.generator(42)
+ *             .courseCount(500)
+ *             .maxMemberships(10)
+ *             .build();
+ *     generator.stream(100_000).forEach(user -> ...);
+ * </pre>
+ * Each user only depends on the seed, the settings and its index, so the same settings always produce the same
+ * users, also in parallel streams. Users are created lazily, so memory use does not depend on the number of users.
+ * <p>
+ * Memberships are distributed over a fixed set of courses ({@link #getCourseIds()}). The roles are chosen according to
+ * the role weights (by default mostly students), a share of the memberships is unpublished, and a share of the
+ * memberships is not active at the reference time, i.e., it has already ended or has not started yet.
+ * <p>
+ * The reference time defaults to the start of the current day (UTC), so that memberships are active now, like those
+ * of {@link TestUsers}. Only the membership dates depend on it. To produce exactly the same users on every day,
+ * e.g., for a dataset checked into the repository, set a fixed reference time:
+ * <pre>
+ *     TestUsers.generator(42)
+ *             .referenceTime(OffsetDateTime.parse("2025-01-01T00:00Z"))
+ *             .build();
+ * </pre>
+ */
+public class TestUserGenerator {
+
+    /**
+     * The columns of the rows created by {@link #membershipRows(LoggedInUser)}.
+     */
+    public static final List<String> MEMBERSHIP_COLUMNS =
+            List.of("user_id", "course_id", "role", "published", "start_date", "end_date");
+
+    private final long seed;
+    private final List<UUID> courseIds;
+    private final int minMemberships;
+    private final int maxMemberships;
+    private final LoggedInUser.UserRoleInCourse[] roles;
+    private final int[] cumulativeRoleWeights;
+    private final double publishedRatio;
+    private final double activeRatio;
+    private final OffsetDateTime referenceTime;
+    private final Set<LoggedInUser.RealmRole> realmRoles;
+
+    /**
+     * @param seed           the seed of the generator
+     * @param courseCount    the number of courses the memberships are distributed over, defaults to 100
+     * @param minMemberships the minimum number of memberships per user, defaults to 0
+     * @param maxMemberships the maximum number of memberships per user, defaults to 5
+     * @param roleWeights    the relative frequency of each role, defaults to 85% students, 10% tutors, 5% administrators
+     * @param publishedRatio the share of published memberships, defaults to 0.9
+     * @param activeRatio    the share of memberships that are active at the reference time, defaults to 0.8
+     * @param referenceTime  the time the membership dates are relative to, defaults to the start of the
+     *                       current day (UTC). Set a fixed time to get the same dates on every day.
+     * @param realmRoles     the realm roles of all users, defaults to none
+     */
+    @Builder
+    private TestUserGenerator(final long seed,
+                              final Integer courseCount,
+                              final Integer minMemberships,
+                              final Integer maxMemberships,
+                              final Map<LoggedInUser.UserRoleInCourse, Integer> roleWeights,
+                              final Double publishedRatio,
+                              final Double activeRatio,
+                              final OffsetDateTime referenceTime,
+                              final Set<LoggedInUser.RealmRole> realmRoles) {
+        this.seed = seed;
+        this.minMemberships = Objects.requireNonNullElse(minMemberships, 0);
+        this.maxMemberships = Objects.requireNonNullElse(maxMemberships, 5);
+        this.publishedRatio = Objects.requireNonNullElse(publishedRatio, 0.9);
+        this.activeRatio = Objects.requireNonNullElse(activeRatio, 0.8);
+        this.referenceTime = Objects.requireNonNullElseGet(referenceTime,
+                () -> OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS));
+        this.realmRoles = Objects.requireNonNullElse(realmRoles, Collections.emptySet());
+
+        if (this.minMemberships < 0 || this.maxMemberships < this.minMemberships) {
+            throw new IllegalArgumentException("Invalid number of memberships: " + minMemberships + " to " + maxMemberships);
+        }
+
+        final SplittableRandom courseRandom = new SplittableRandom(seed);
+        this.courseIds = IntStream.range(0, Objects.requireNonNullElse(courseCount, 100))
+                .mapToObj(i -> randomUuid(courseRandom))
+                .toList();
+        if (this.courseIds.isEmpty() && this.maxMemberships > 0) {
+            throw new IllegalArgumentException("Memberships require at least one course");
+        }
+
+        final Map<LoggedInUser.UserRoleInCourse, Integer> weights = new EnumMap<>(
+                Objects.requireNonNullElseGet(roleWeights, TestUserGenerator::defaultRoleWeights));
+        this.roles = weights.keySet().toArray(LoggedInUser.UserRoleInCourse[]::new);
+        this.cumulativeRoleWeights = new int[roles.length];
+        int sum = 0;
+        for (int i = 0; i < roles.length; i++) {
+            sum += weights.get(roles[i]);
+            cumulativeRoleWeights[i] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("At least one role must have a positive weight");
+        }
+    }
+
+    /**
+     * @return the ids of the courses the memberships are distributed over
+     */
+    public List<UUID> getCourseIds() {
+        return courseIds;
+    }
+
+    /**
+     * Returns the user with the given index.
+     *
+     * @param index the index of the user
+     * @return the user
+     */
+    public LoggedInUser user(final long index) {
+        // mixed, so that the streams of different users and of the courses do not overlap
+        final SplittableRandom random = new SplittableRandom(mix64(seed ^ mix64(index + 1)));
+
+        final UUID userId = randomUuid(random);
+        final int membershipCount = minMemberships + random.nextInt(maxMemberships - minMemberships + 1);
+
+        // a user has at most one membership per course
+        final Set<Integer> courseIndices = new LinkedHashSet<>();
+        while (courseIndices.size() < Math.min(membershipCount, courseIds.size())) {
+            courseIndices.add(random.nextInt(courseIds.size()));
+        }
+
+        final List<LoggedInUser.CourseMembership> memberships = new ArrayList<>(courseIndices.size());
+        for (final int courseIndex : courseIndices) {
+            memberships.add(membership(courseIds.get(courseIndex), random));
+        }
+
+        return LoggedInUser.builder()
+                .id(userId)
+                .userName("user" + index)
+                .firstName("firstName" + index)
+                .lastName("lastName" + index)
+                .nickname("nickname" + index)
+                .courseMemberships(memberships)
+                .realmRoles(realmRoles)
+                .build();
+    }
+
+    /**
+     * Returns a lazy stream of the users with the indices 0 to count - 1.
+     *
+     * @param count the number of users
+     * @return the users
+     */
+    public Stream<LoggedInUser> stream(final long count) {
+        return LongStream.range(0, count).mapToObj(this::user);
+    }
+
+    /**
+     * Converts the memberships of a user to rows with the columns {@link #MEMBERSHIP_COLUMNS}.
+     *
+     * @param user the user
+     * @return one row per membership
+     */
+    public static Stream<List<Object>> membershipRows(final LoggedInUser user) {
+        return user.getCourseMemberships().stream()
+                .map(membership -> Arrays.asList(
+                        user.getId(),
+                        membership.getCourseId(),
+                        membership.getRole(),
+                        membership.isPublished(),
+                        membership.getStartDate(),
+                        membership.getEndDate()));
+    }
+
+    /**
+     * Generates users and writes the memberships of the users to a table with {@link PostgresBulkCopy}.
+     * The table must have the columns {@link #MEMBERSHIP_COLUMNS}.
+     *
+     * @param dataSource the data source of a PostgreSQL database
+     * @param table      the table to write to
+     * @param userCount  the number of users to generate
+     * @return the number of written memberships
+     */
+    public long copyMembershipsTo(final DataSource dataSource, final String table, final long userCount)
+            throws SQLException {
+        return PostgresBulkCopy.copyIn(dataSource, table, MEMBERSHIP_COLUMNS,
+                stream(userCount).flatMap(TestUserGenerator::membershipRows));
+    }
+
+    private LoggedInUser.CourseMembership membership(final UUID courseId, final SplittableRandom random) {
+        final OffsetDateTime startDate;
+        final OffsetDateTime endDate;
+        if (random.nextDouble() < activeRatio) {
+            startDate = referenceTime.minusDays(1 + random.nextInt(180));
+            endDate = referenceTime.plusDays(1 + random.nextInt(180));
+        } else if (random.nextBoolean()) {
+            // already ended
+            endDate = referenceTime.minusDays(1 + random.nextInt(180));
+            startDate = endDate.minusDays(1 + random.nextInt(180));
+        } else {
+            // not started yet
+            startDate = referenceTime.plusDays(1 + random.nextInt(180));
+            endDate = startDate.plusDays(1 + random.nextInt(180));
+        }
+
+        return LoggedInUser.CourseMembership.builder()
+                .courseId(courseId)
+                .role(randomRole(random))
+                .published(random.nextDouble() < publishedRatio)
+                .startDate(startDate)
+                .endDate(endDate)
+                .build();
+    }
+
+    private LoggedInUser.UserRoleInCourse randomRole(final SplittableRandom random) {
+        final int value = random.nextInt(cumulativeRoleWeights[cumulativeRoleWeights.length - 1]);
+        for (int i = 0; i < cumulativeRoleWeights.length; i++) {
+            if (value < cumulativeRoleWeights[i]) {
+                return roles[i];
+            }
+        }
+        throw new IllegalStateException("unreachable");
+    }
+
+    private static UUID randomUuid(final SplittableRandom random) {
+        // set the version (4) and variant bits like UUID.randomUUID()
+        final long mostSignificantBits = (random.nextLong() & 0xFFFFFFFFFFFF0FFFL) | 0x0000000000004000L;
+        final long leastSignificantBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    private static Map<LoggedInUser.UserRoleInCourse, Integer> defaultRoleWeights() {
+        return Map.of(
+                LoggedInUser.UserRoleInCourse.STUDENT, 85,
+                LoggedInUser.UserRoleInCourse.TUTOR, 10,
+                LoggedInUser.UserRoleInCourse.ADMINISTRATOR, 5);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, a bijection that spreads similar inputs over all values.
+     */
+    private static long mix64(final long value) {
+        long mixed = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        mixed = (mixed ^ (mixed >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return mixed ^ (mixed >>> 33);
+    }
+}
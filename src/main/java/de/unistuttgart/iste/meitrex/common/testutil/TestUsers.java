@@ -65,6 +65,17 @@ public class TestUsers {
                 .build();
     }
 
+    /**
+     * Creates a builder for a {@link TestUserGenerator}, which generates large numbers of users
+     * with random memberships deterministically from the given seed.
+     *
+     * @param seed the seed of the generator
+     * @return a builder for a generator with the given seed
+     */
+    public static TestUserGenerator.TestUserGeneratorBuilder generator(final long seed) {
+        return TestUserGenerator.builder().seed(seed);
+    }
+
     private static LoggedInUser.CourseMembership.CourseMembershipBuilder membershipBuilder() {
         return LoggedInUser.CourseMembership.builder()
                 .published(true)
@@ -0,0 +1,137 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.socket.*;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * {@link WebSocketClient} that reads the messages of its sessions slowly, to simulate slow clients for
+ * {@link GraphQlSubscriptionLoadTester}.
+ * <p>
+ * Each session requests one inbound message at a time and waits for the read delay before requesting the next one.
+ * Reactor Netty stops reading from the socket while there is no demand, so the server sees a slow reader:
+ * its send buffers fill up, and it has to delay, buffer or drop the messages for this client.
+ */
+class ThrottledWebSocketClient implements WebSocketClient {
+
+    private final WebSocketClient delegate;
+    private final Duration readDelay;
+
+    ThrottledWebSocketClient(final WebSocketClient delegate, final Duration readDelay) {
+        this.delegate = delegate;
+        this.readDelay = readDelay;
+    }
+
+    @Override
+    public Mono<Void> execute(final URI url, final WebSocketHandler handler) {
+        return execute(url, new HttpHeaders(), handler);
+    }
+
+    @Override
+    public Mono<Void> execute(final URI url, final HttpHeaders headers, final WebSocketHandler handler) {
+        return delegate.execute(url, headers, new WebSocketHandler() {
+            @Override
+            public List<String> getSubProtocols() {
+                return handler.getSubProtocols();
+            }
+
+            @Override
+            public Mono<Void> handle(final WebSocketSession session) {
+                return handler.handle(new ThrottledSession(session, readDelay));
+            }
+        });
+    }
+
+    private record ThrottledSession(WebSocketSession delegate, Duration readDelay) implements WebSocketSession {
+
+        @Override
+        public Flux<WebSocketMessage> receive() {
+            return delegate.receive()
+                    .map(ThrottledSession::copy)
+                    .concatMap(message -> Mono.delay(readDelay).thenReturn(message), 1);
+        }
+
+        /**
+         * Copies the message to a heap buffer, as the buffer of the received message is released as soon as it has
+         * been passed on, and this message is only passed on after the read delay.
+         */
+        private static WebSocketMessage copy(final WebSocketMessage message) {
+            final DataBuffer payload = message.getPayload();
+            final byte[] bytes = new byte[payload.readableByteCount()];
+            payload.read(bytes);
+            return new WebSocketMessage(message.getType(), DefaultDataBufferFactory.sharedInstance.wrap(bytes));
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public HandshakeInfo getHandshakeInfo() {
+            return delegate.getHandshakeInfo();
+        }
+
+        @Override
+        public DataBufferFactory bufferFactory() {
+            return delegate.bufferFactory();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return delegate.getAttributes();
+        }
+
+        @Override
+        public Mono<Void> send(final Publisher<WebSocketMessage> messages) {
+            return delegate.send(messages);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public Mono<Void> close(final CloseStatus status) {
+            return delegate.close(status);
+        }
+
+        @Override
+        public Mono<CloseStatus> closeStatus() {
+            return delegate.closeStatus();
+        }
+
+        @Override
+        public WebSocketMessage textMessage(final String payload) {
+            return delegate.textMessage(payload);
+        }
+
+        @Override
+        public WebSocketMessage binaryMessage(final Function<DataBufferFactory, DataBuffer> payloadFactory) {
+            return delegate.binaryMessage(payloadFactory);
+        }
+
+        @Override
+        public WebSocketMessage pingMessage(final Function<DataBufferFactory, DataBuffer> payloadFactory) {
+            return delegate.pingMessage(payloadFactory);
+        }
+
+        @Override
+        public WebSocketMessage pongMessage(final Function<DataBufferFactory, DataBuffer> payloadFactory) {
+            return delegate.pongMessage(payloadFactory);
+        }
+    }
+}
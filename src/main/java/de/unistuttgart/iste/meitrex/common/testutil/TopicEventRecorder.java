@@ -0,0 +1,320 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Records the events published through the {@link de.unistuttgart.iste.meitrex.common.dapr.TopicPublisher} of
+ * {@link RecordingTopicPublisherConfiguration}.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest
+ *     &#64;Import(RecordingTopicPublisherConfiguration.class)
+ *     public class MyTest {
+ *         &#64;Autowired
+ *         private TopicEventRecorder recorder;
+ *
+ *         &#64;BeforeEach
+ *         void clearEvents() {
+ *             recorder.clear();
+ *         }
+ *
+ *         &#64;Test
+ *         void test() {
+ *             // ...
+ *             recorder.awaitCount("notifyUserWorkedOnContent", 1, Duration.ofSeconds(5));
+ *             assertThat(recorder.eventsForUser(userId), hasSize(1));
+ *         }
+ * </pre>
+ * Events are kept in a ring buffer with a fixed capacity. Once it is full, each new event replaces the oldest one,
+ * so memory use does not grow with the number of events. Recording does not lock the buffer. The counters per topic
+ * count all events, including replaced ones.
+ * <p>
+ * Events whose payload has a {@code getUserId()} or {@code getContentId()} method returning a {@link UUID},
+ * like {@code ContentProgressedEvent} and {@code UserProgressUpdatedEvent}, are indexed by user and content.
+ * Replaced events are removed from the index as well, so the index never holds more events than the buffer.
+ */
+public class TopicEventRecorder {
+
+    private static final long AWAIT_POLL_NANOS = Duration.ofMillis(5).toNanos();
+
+    private static final ClassValue<IdAccessors> ID_ACCESSORS = new ClassValue<>() {
+        @Override
+        protected IdAccessors computeValue(final Class<?> type) {
+            return new IdAccessors(findUuidGetter(type, "getUserId"), findUuidGetter(type, "getContentId"));
+        }
+    };
+
+    private final int capacity;
+    private final AtomicReferenceArray<RecordedEvent> events;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private volatile long firstSequence = 0;
+
+    private final Map<String, LongAdder> countsByTopic = new ConcurrentHashMap<>();
+    private final Map<UUID, Queue<RecordedEvent>> eventsByUser = new ConcurrentHashMap<>();
+    private final Map<UUID, Queue<RecordedEvent>> eventsByContent = new ConcurrentHashMap<>();
+    private final List<Consumer<RecordedEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param capacity the maximum number of events to keep
+     */
+    public TopicEventRecorder(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.events = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Records an event.
+     *
+     * @param topic   the topic of the event
+     * @param payload the event DTO built by the publisher method
+     */
+    void record(final String topic, final Object payload) {
+        final long sequence = nextSequence.getAndIncrement();
+        final RecordedEvent event = new RecordedEvent(sequence, topic, payload, Instant.now());
+
+        final RecordedEvent replaced = events.getAndSet((int) (sequence % capacity), event);
+        countsByTopic.computeIfAbsent(topic, key -> new LongAdder()).increment();
+
+        if (replaced != null && replaced.payload() != null) {
+            final IdAccessors accessors = ID_ACCESSORS.get(replaced.payload().getClass());
+            unindex(eventsByUser, accessors.userId(), replaced);
+            unindex(eventsByContent, accessors.contentId(), replaced);
+        }
+        if (payload != null) {
+            final IdAccessors accessors = ID_ACCESSORS.get(payload.getClass());
+            index(eventsByUser, accessors.userId(), event);
+            index(eventsByContent, accessors.contentId(), event);
+        }
+
+        for (final Consumer<RecordedEvent> listener : listeners) {
+            listener.accept(event);
+        }
+    }
+
+    /**
+     * Adds a listener that is called with each recorded event, on the thread that published the event.
+     *
+     * @param listener the listener
+     */
+    public void addListener(final Consumer<RecordedEvent> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes all events and resets all counters.
+     */
+    public void clear() {
+        firstSequence = nextSequence.get();
+        for (int i = 0; i < capacity; i++) {
+            events.set(i, null);
+        }
+        countsByTopic.clear();
+        eventsByUser.clear();
+        eventsByContent.clear();
+    }
+
+    /**
+     * @param topic the topic
+     * @return the number of events published to the topic since the recorder was last cleared
+     */
+    public long count(final String topic) {
+        final LongAdder count = countsByTopic.get(topic);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * @return the number of events per topic since the recorder was last cleared
+     */
+    public Map<String, Long> counts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        countsByTopic.forEach((topic, count) -> counts.put(topic, count.sum()));
+        return counts;
+    }
+
+    /**
+     * @return the number of events that were replaced because the buffer was full
+     */
+    public long droppedCount() {
+        return Math.max(0, nextSequence.get() - firstSequence - capacity);
+    }
+
+    /**
+     * @return the events in the buffer, oldest first
+     */
+    public List<RecordedEvent> events() {
+        return findEvents(event -> true);
+    }
+
+    /**
+     * @param topic the topic
+     * @return the events of the topic in the buffer, oldest first
+     */
+    public List<RecordedEvent> events(final String topic) {
+        return findEvents(event -> event.topic().equals(topic));
+    }
+
+    /**
+     * @param topic the topic
+     * @param type  the type of the payloads
+     * @param <T>   the type of the payloads
+     * @return the payloads of the events of the topic in the buffer, oldest first
+     */
+    public <T> List<T> payloads(final String topic, final Class<T> type) {
+        return events(topic).stream()
+                .map(event -> event.payloadAs(type))
+                .toList();
+    }
+
+    /**
+     * @param userId the id of the user
+     * @return the events in the buffer whose payload has the given user id, oldest first
+     */
+    public List<RecordedEvent> eventsForUser(final UUID userId) {
+        return retained(eventsByUser.get(userId));
+    }
+
+    /**
+     * @param contentId the id of the content
+     * @return the events in the buffer whose payload has the given content id, oldest first
+     */
+    public List<RecordedEvent> eventsForContent(final UUID contentId) {
+        return retained(eventsByContent.get(contentId));
+    }
+
+    /**
+     * Waits until at least the given number of events have been published to the topic.
+     *
+     * @param topic   the topic
+     * @param count   the number of events
+     * @param timeout the maximum time to wait
+     * @throws AssertionError if the events have not been published in time
+     */
+    public void awaitCount(final String topic, final long count, final Duration timeout) {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        while (count(topic) < count) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new AssertionError("Expected at least %d event(s) on %s within %s, but got %d. Counts: %s"
+                        .formatted(count, topic, timeout, count(topic), counts()));
+            }
+            LockSupport.parkNanos(AWAIT_POLL_NANOS);
+        }
+    }
+
+    /**
+     * Waits until an event matching the predicate has been recorded.
+     *
+     * @param predicate the predicate
+     * @param timeout   the maximum time to wait
+     * @return the first matching event
+     * @throws AssertionError if no matching event has been recorded in time
+     */
+    public RecordedEvent awaitEvent(final Predicate<RecordedEvent> predicate, final Duration timeout) {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            final List<RecordedEvent> matching = findEvents(predicate);
+            if (!matching.isEmpty()) {
+                return matching.getFirst();
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new AssertionError("Expected a matching event within %s. Counts: %s".formatted(timeout, counts()));
+            }
+            LockSupport.parkNanos(AWAIT_POLL_NANOS);
+        }
+    }
+
+    private List<RecordedEvent> findEvents(final Predicate<RecordedEvent> predicate) {
+        final long end = nextSequence.get();
+        final long start = Math.max(firstSequence, end - capacity);
+
+        final List<RecordedEvent> result = new ArrayList<>();
+        for (long sequence = start; sequence < end; sequence++) {
+            final RecordedEvent event = events.get((int) (sequence % capacity));
+            // the slot may not be written yet or already contain a newer event
+            if (event != null && event.sequence() == sequence && predicate.test(event)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    private List<RecordedEvent> retained(final Queue<RecordedEvent> indexedEvents) {
+        if (indexedEvents == null) {
+            return List.of();
+        }
+        final long oldestRetained = Math.max(firstSequence, nextSequence.get() - capacity);
+        return indexedEvents.stream()
+                .filter(event -> event.sequence() >= oldestRetained)
+                .sorted(Comparator.comparingLong(RecordedEvent::sequence))
+                .toList();
+    }
+
+    private static void index(final Map<UUID, Queue<RecordedEvent>> index,
+                              final MethodHandle idGetter,
+                              final RecordedEvent event) {
+        final UUID id = getId(idGetter, event.payload());
+        if (id == null) {
+            return;
+        }
+        // compute is atomic per id, so that unindex cannot remove a queue an event is just added to
+        index.compute(id, (key, indexedEvents) -> {
+            final Queue<RecordedEvent> queue = indexedEvents != null ? indexedEvents : new ConcurrentLinkedQueue<>();
+            queue.add(event);
+            return queue;
+        });
+    }
+
+    private static void unindex(final Map<UUID, Queue<RecordedEvent>> index,
+                                final MethodHandle idGetter,
+                                final RecordedEvent event) {
+        final UUID id = getId(idGetter, event.payload());
+        if (id == null) {
+            return;
+        }
+        // the replaced event is the oldest one, so it is found at the head of the queue;
+        // empty queues are removed, so that ids of old events do not stay in the map
+        index.computeIfPresent(id, (key, indexedEvents) -> {
+            indexedEvents.remove(event);
+            return indexedEvents.isEmpty() ? null : indexedEvents;
+        });
+    }
+
+    private static UUID getId(final MethodHandle idGetter, final Object payload) {
+        if (idGetter == null) {
+            return null;
+        }
+        try {
+            return (UUID) idGetter.invoke(payload);
+        } catch (final Throwable e) {
+            throw new IllegalStateException("Could not read id of " + payload, e);
+        }
+    }
+
+    private static MethodHandle findUuidGetter(final Class<?> type, final String name) {
+        try {
+            return MethodHandles.publicLookup().findVirtual(type, name, MethodType.methodType(UUID.class));
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private record IdAccessors(MethodHandle userId, MethodHandle contentId) {
+    }
+}
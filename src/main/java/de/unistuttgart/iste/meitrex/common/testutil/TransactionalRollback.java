@@ -0,0 +1,237 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.springframework.context.ApplicationContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JUnit test extension that runs each test in a transaction that is rolled back after the test.
+ * This replaces clearing the database with {@link ClearDatabase}, which skips tests isolated by this extension.
+ * <p>
+ * Usage:
+ * <pre>
+ *     &#64;GraphQlApiTest(rollback = true)
+ *     public class MyTest {
+ *       // ...
+ * </pre>
+ * or, without {@link GraphQlApiTest}:
+ * <pre>
+ *     &#64;ExtendWith(TransactionalRollback.class)
+ *     public class MyTest {
+ *       // ...
+ * </pre>
+ * The transaction is bound to the thread of the test. It therefore only isolates work that is done on that thread,
+ * like requests of the {@link org.springframework.graphql.test.tester.HttpGraphQlTester} injected by
+ * {@link GraphQlTesterParameterResolver}, which runs them through MockMvc.
+ * Cases that cannot be isolated are refused:
+ * <ul>
+ *     <li>{@link org.springframework.graphql.test.tester.WebSocketGraphQlTester}s cannot be injected,
+ *     as their requests are handled by the server on other threads.</li>
+ *     <li>Contexts with {@code spring.threads.virtual.enabled=true} are rejected, as controller methods may then
+ *     run on other threads.</li>
+ *     <li>Writes of other transactions, e.g., due to {@code REQUIRES_NEW} propagation or async work, are not
+ *     rolled back. After the rollback, the extension checks whether PostgreSQL assigned transaction ids to other
+ *     transactions during the test. As this also happens for work in other databases of the server or for
+ *     {@code ANALYZE}, the tables of the test's database are then searched for rows written by those
+ *     transactions. If there are any, the test fails and all tables are truncated, so that later tests start
+ *     from an empty database.</li>
+ * </ul>
+ * The check relies on tests of the same database not running at the same time, which {@link ClearDatabase}
+ * ensures for {@link GraphQlApiTest}s. Rows that other transactions deleted or updated are not detected.
+ * The check can be disabled with the system property {@code meitrex.rollback.check-foreign-writes=false},
+ * e.g., if searching the tables after each test is too slow for large datasets. Writes of other transactions
+ * then remain in the database.
+ * Note that, as with Spring's {@code @Transactional} tests, changes that JPA has not flushed before the
+ * rollback are never sent to the database.
+ */
+public class TransactionalRollback implements BeforeEachCallback, AfterEachCallback {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(TransactionalRollback.class);
+    private static final String ACTIVE_KEY = "active";
+    private static final String TRANSACTION_KEY = "transaction";
+    private static final String NEXT_TRANSACTION_ID_KEY = "nextTransactionId";
+
+    private static final String CHECK_FOREIGN_WRITES_PROPERTY = "meitrex.rollback.check-foreign-writes";
+
+    private static final String NEXT_TRANSACTION_ID_QUERY = "SELECT pg_snapshot_xmax(pg_current_snapshot())::text::bigint";
+
+    /**
+     * @param context the extension context of a test
+     * @return true if the test is isolated by this extension
+     */
+    public static boolean isActive(final ExtensionContext context) {
+        return Boolean.TRUE.equals(context.getStore(NAMESPACE).get(ACTIVE_KEY, Boolean.class));
+    }
+
+    /**
+     * Runs the action and rolls its changes back to a savepoint of the test transaction, so that the database is
+     * in the same state as before. The JPA persistence context is cleared as well, so that entities loaded or
+     * persisted by the action are not reused afterwards.
+     *
+     * @param context the extension context of a test isolated by this extension
+     * @param action  the action
+     * @throws Throwable if the action fails
+     */
+    static void runAndRollBack(final ExtensionContext context, final Executable action) throws Throwable {
+        final TransactionStatus transaction = context.getStore(NAMESPACE).get(TRANSACTION_KEY, TransactionStatus.class);
+        if (transaction == null) {
+            throw new IllegalStateException("The test is not isolated by a transaction");
+        }
+
+        final Object savepoint = transaction.createSavepoint();
+        try {
+            action.execute();
+        } finally {
+            transaction.rollbackToSavepoint(savepoint);
+            transaction.releaseSavepoint(savepoint);
+            for (final Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+                if (resource instanceof EntityManagerHolder entityManagerHolder) {
+                    entityManagerHolder.getEntityManager().clear();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void beforeEach(final ExtensionContext context) throws SQLException {
+        if (!isEnabled(context)) {
+            return;
+        }
+
+        final ApplicationContext applicationContext = SpringExtension.getApplicationContext(context);
+        if (applicationContext.getEnvironment().getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            throw new ExtensionConfigurationException("Transactional rollback cannot isolate tests if "
+                                                      + "spring.threads.virtual.enabled is set, as requests may be "
+                                                      + "handled on other threads");
+        }
+
+        final DataSource dataSource = applicationContext.getBean("dataSource", DataSource.class);
+        if (!TableDependencyGraph.of(dataSource).isPostgres()) {
+            throw new ExtensionConfigurationException("Transactional rollback requires a PostgreSQL database");
+        }
+
+        final ExtensionContext.Store store = context.getStore(NAMESPACE);
+        if (!"false".equalsIgnoreCase(System.getProperty(CHECK_FOREIGN_WRITES_PROPERTY))) {
+            store.put(NEXT_TRANSACTION_ID_KEY, getNextTransactionId(dataSource));
+        }
+
+        final PlatformTransactionManager transactionManager = applicationContext.getBean(PlatformTransactionManager.class);
+        store.put(TRANSACTION_KEY, transactionManager.getTransaction(new DefaultTransactionDefinition()));
+        store.put(ACTIVE_KEY, true);
+    }
+
+    @Override
+    public void afterEach(final ExtensionContext context) throws SQLException {
+        final ExtensionContext.Store store = context.getStore(NAMESPACE);
+        final TransactionStatus transaction = store.remove(TRANSACTION_KEY, TransactionStatus.class);
+        if (transaction == null) {
+            return;
+        }
+
+        final ApplicationContext applicationContext = SpringExtension.getApplicationContext(context);
+        final DataSource dataSource = applicationContext.getBean("dataSource", DataSource.class);
+
+        final Long nextTransactionIdBefore = store.remove(NEXT_TRANSACTION_ID_KEY, Long.class);
+        Long ownTransactionId = null;
+        try {
+            if (nextTransactionIdBefore != null) {
+                // the test transaction itself only gets a transaction id if it wrote to the database
+                ownTransactionId = new JdbcTemplate(dataSource)
+                        .queryForObject("SELECT pg_current_xact_id_if_assigned()::text::bigint", Long.class);
+            }
+        } catch (final DataAccessException e) {
+            // the test left the transaction aborted, e.g., by a failed statement, so all ids count as foreign
+        } finally {
+            applicationContext.getBean(PlatformTransactionManager.class).rollback(transaction);
+        }
+
+        if (nextTransactionIdBefore == null) {
+            return;
+        }
+        final long nextTransactionIdAfter = getNextTransactionId(dataSource);
+        final long foreignTransactions = nextTransactionIdAfter - nextTransactionIdBefore - (ownTransactionId != null ? 1 : 0);
+        if (foreignTransactions <= 0) {
+            return;
+        }
+
+        // the rows of the test transaction are rolled back, so rows with an id in the range were written by others
+        final List<String> writtenTables = findTablesWrittenBetween(dataSource, nextTransactionIdBefore, nextTransactionIdAfter);
+        if (!writtenTables.isEmpty()) {
+            truncateAllTables(dataSource);
+            throw new IllegalStateException(("Transactions other than the test transaction wrote to %s during the "
+                                             + "test, e.g., due to REQUIRES_NEW propagation or async work. The test "
+                                             + "cannot be isolated by a rollback, use ClearDatabase instead.")
+                    .formatted(String.join(", ", writtenTables)));
+        }
+    }
+
+    private static boolean isEnabled(final ExtensionContext context) {
+        return AnnotationSupport.findAnnotation(context.getRequiredTestClass(), GraphQlApiTest.class)
+                .map(GraphQlApiTest::rollback)
+                // registered explicitly
+                .orElse(true);
+    }
+
+    /**
+     * Returns the next transaction id PostgreSQL will assign. The query is run on a separate connection,
+     * outside any transaction bound to the current thread, and does not get a transaction id itself.
+     */
+    private static long getNextTransactionId(final DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(NEXT_TRANSACTION_ID_QUERY)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Finds the tables with rows inserted or updated by transactions with an id in {@code [from, to)}.
+     * Rows store the lower 32 bits of the transaction id in {@code xmin}, so the range is compared modulo 2^32.
+     */
+    private static List<String> findTablesWrittenBetween(final DataSource dataSource, final long from, final long to)
+            throws SQLException {
+        final long lower = from & 0xFFFFFFFFL;
+        final long upper = (to - 1) & 0xFFFFFFFFL;
+        final String condition = lower <= upper
+                ? "xmin::text::bigint BETWEEN %d AND %d".formatted(lower, upper)
+                : "(xmin::text::bigint >= %d OR xmin::text::bigint <= %d)".formatted(lower, upper);
+
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        final List<String> writtenTables = new ArrayList<>();
+        for (final String table : TableDependencyGraph.of(dataSource).getTablesInDeletionOrder()) {
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + table + " WHERE " + condition + ")", Boolean.class))) {
+                writtenTables.add(table);
+            }
+        }
+        return writtenTables;
+    }
+
+    private static void truncateAllTables(final DataSource dataSource) throws SQLException {
+        final List<String> tables = TableDependencyGraph.of(dataSource).getTablesInDeletionOrder();
+        if (!tables.isEmpty()) {
+            new JdbcTemplate(dataSource).execute("TRUNCATE TABLE " + String.join(", ", tables) + " RESTART IDENTITY CASCADE");
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package de.unistuttgart.iste.meitrex.common.testutil;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import de.unistuttgart.iste.meitrex.common.event.CrudOperation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests that events published through the {@link RecordingTopicPublisher} are routed by the name of the publisher
+ * method to the subscription endpoints.
+ */
+class InProcessPubSubTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private AnnotationConfigWebApplicationContext applicationContext;
+    private SubscriptionController controller;
+    private TopicEventRecorder recorder;
+    private RecordingTopicPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        applicationContext = new AnnotationConfigWebApplicationContext();
+        applicationContext.setServletContext(new MockServletContext());
+        applicationContext.register(WebConfiguration.class);
+        applicationContext.refresh();
+        controller = applicationContext.getBean(SubscriptionController.class);
+
+        recorder = new TopicEventRecorder(100);
+        publisher = new RecordingTopicPublisher(recorder);
+    }
+
+    @AfterEach
+    void tearDown() {
+        applicationContext.close();
+    }
+
+    @Test
+    void testEventIsDeliveredToRouteOfPublisherMethod() {
+        final UUID courseId = UUID.randomUUID();
+
+        try (final InProcessPubSub pubSub = InProcessPubSub.builder()
+                .applicationContext(applicationContext)
+                .routes(Map.of("notifyCourseChanges", List.of("/course-changes")))
+                .build()) {
+            recorder.addListener(pubSub::publish);
+
+            publisher.notifyCourseChanges(courseId, CrudOperation.CREATE);
+            pubSub.awaitIdle(TIMEOUT);
+
+            assertThat(recorder.count("notifyCourseChanges"), is(1L));
+            assertThat(pubSub.getStats().delivered(), is(1L));
+            assertThat(pubSub.getStats().unrouted(), is(0L));
+        }
+
+        assertThat(controller.courseChanges, hasSize(1));
+        final JsonNode cloudEvent = controller.courseChanges.peek();
+        assertThat(cloudEvent.path("topic").asText(), is("notifyCourseChanges"));
+        assertThat(cloudEvent.path("pubsubname").asText(), is(InProcessPubSub.PUBSUB_NAME));
+        // the event DTO is delivered, not the arguments of the publisher method
+        assertThat(cloudEvent.path("data").isObject(), is(true));
+        assertThat(cloudEvent.path("data").toString(), containsString(courseId.toString()));
+    }
+
+    @Test
+    void testEventOfTopicWithoutRouteIsOnlyCounted() {
+        try (final InProcessPubSub pubSub = InProcessPubSub.builder()
+                .applicationContext(applicationContext)
+                .routes(Map.of("notifyContentChanges", List.of("/course-changes")))
+                .build()) {
+            recorder.addListener(pubSub::publish);
+
+            publisher.notifyCourseChanges(UUID.randomUUID(), CrudOperation.UPDATE);
+            pubSub.awaitIdle(TIMEOUT);
+
+            assertThat(pubSub.getStats().unrouted(), is(1L));
+            assertThat(pubSub.getStats().delivered(), is(0L));
+        }
+
+        assertThat(controller.courseChanges, is(empty()));
+    }
+
+    @Test
+    void testEventsAreDeliveredInBatchesToBulkRoute() {
+        try (final InProcessPubSub pubSub = InProcessPubSub.builder()
+                .applicationContext(applicationContext)
+                .bulkRoutes(Map.of("notifyCourseChanges", List.of("/course-changes/bulk")))
+                .threads(1)
+                .batchSize(4)
+                .batchTimeout(TIMEOUT)
+                .build()) {
+            recorder.addListener(pubSub::publish);
+
+            for (int i = 0; i < 4; i++) {
+                publisher.notifyCourseChanges(UUID.randomUUID(), CrudOperation.DELETE);
+            }
+            pubSub.awaitIdle(TIMEOUT);
+
+            assertThat(pubSub.getStats().delivered(), is(4L));
+            assertThat(pubSub.getStats().failed(), is(0L));
+        }
+
+        assertThat(controller.bulkMessages, hasSize(1));
+        final JsonNode message = controller.bulkMessages.peek();
+        assertThat(message.path("topic").asText(), is("notifyCourseChanges"));
+        assertThat(message.path("entries").size(), is(4));
+        assertThat(message.path("entries").path(0).path("event").path("topic").asText(), is("notifyCourseChanges"));
+    }
+
+    @RestController
+    static class SubscriptionController {
+
+        private final Queue<JsonNode> courseChanges = new ConcurrentLinkedQueue<>();
+        private final Queue<JsonNode> bulkMessages = new ConcurrentLinkedQueue<>();
+
+        @PostMapping("/course-changes")
+        void onCourseChanged(@RequestBody final JsonNode cloudEvent) {
+            courseChanges.add(cloudEvent);
+        }
+
+        @PostMapping("/course-changes/bulk")
+        Map<String, Object> onCourseChangedBulk(@RequestBody final JsonNode message) {
+            bulkMessages.add(message);
+            final List<Map<String, String>> statuses = new ArrayList<>();
+            for (final JsonNode entry : message.path("entries")) {
+                statuses.add(Map.of("entryId", entry.path("entryId").asText(), "status", "SUCCESS"));
+            }
+            return Map.of("statuses", statuses);
+        }
+    }
+
+    @Configuration
+    @EnableWebMvc
+    @Import(SubscriptionController.class)
+    static class WebConfiguration {
+    }
+}